@@ -17,6 +17,27 @@ repositories {
 dependencies {
     compileOnly(libs.jetbrains.annotations)
     compileOnly(libs.jspecify)
+
+    testImplementation(platform(libs.junit.bom))
+    testImplementation(libs.junit.jupiter)
+    testRuntimeOnly(libs.junit.platform.launcher)
+}
+
+// Tests and benchmarks run against the same server classes the plugin compiles against.
+configurations.testImplementation {
+    extendsFrom(configurations.compileOnly.get())
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
+
+// Runs one of the benchmark classes under src/test, e.g. ./gradlew bench -Pbench=com.hlw.hlTech.util.PackedPositionBench
+tasks.register<JavaExec>("bench") {
+    group = "verification"
+    description = "Runs the benchmark class given with -Pbench=<fully qualified name>."
+    classpath = sourceSets.test.get().runtimeClasspath
+    mainClass = providers.gradleProperty("bench")
 }
 
 hytale {
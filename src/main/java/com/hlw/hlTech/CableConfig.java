@@ -29,7 +29,20 @@ public class CableConfig {
     public long transferIntervalMs = 100L;
     public int itemsPerTransfer = 1;
     public boolean debugMode = false;
+    public double transferTickBudgetMs = 4.0d;
+    public int transferRoutesPerTick = 0;
+    public long idleRecheckMs = 5000L;
+    public long backoffBaseMs = 500L;
+    public long backoffMaxMs = 30000L;
+    public long retryIntervalMs = 1000L;
+    public long chunkRecheckIntervalMs = 5000L;
+    public long chunkFallbackRecheckMs = 60000L;
+    public long journalFlushIntervalMs = 1000L;
+    public long snapshotIntervalMs = 600000L;
+    public long journalCompactionBytes = 262144L;
+    public boolean verifyLoadedTopology = false;
     public Map<String, List<Integer>> extractionRules = new HashMap();
+    public Map<String, List<String>> itemTags = new HashMap<>();
 
     public static CableConfig load() {
         File file = new File("cable_config.json");
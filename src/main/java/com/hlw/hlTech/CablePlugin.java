@@ -18,14 +18,20 @@
 package com.hlw.hlTech;
 
 import com.hlw.hlTech.network.CableNetworkManager;
+import com.hlw.hlTech.network.ItemTags;
 import com.hypixel.hytale.component.ComponentType;
+import com.hypixel.hytale.server.core.asset.type.item.config.Item;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+import com.hypixel.hytale.server.core.universe.world.events.ChunkPreLoadProcessEvent;
 import com.hypixel.hytale.server.core.universe.world.events.StartWorldEvent;
 import com.hypixel.hytale.server.core.universe.world.storage.ChunkStore;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 
 import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.ScheduledExecutorService;
 
 public class CablePlugin extends JavaPlugin {
@@ -60,8 +66,13 @@ public class CablePlugin extends JavaPlugin {
 
 
         CableConfig config = CableConfig.load();
-        //this.cableNetworkManager.setConfig(config);
-        System.out.println("[CablePlugin] Config loaded: Interval=" + config.transferIntervalMs + "ms, Items=" + config.itemsPerTransfer);
+        this.cableNetworkManager.setConfig(config);
+        ItemTags.setCategoryLookup(itemId -> {
+            Item item = (Item)Item.getAssetMap().getAsset(itemId);
+            if (item == null || item.getCategories() == null) return Collections.emptyList();
+            return Arrays.asList(item.getCategories());
+        });
+        System.out.println("[CablePlugin] Config loaded: Interval=" + config.transferIntervalMs + "ms, Items=" + config.itemsPerTransfer + ", Retry=" + config.retryIntervalMs + "ms, ChunkRecheck=" + config.chunkRecheckIntervalMs + "ms/" + config.chunkFallbackRecheckMs + "ms, JournalFlush=" + config.journalFlushIntervalMs + "ms, Snapshot=" + config.snapshotIntervalMs + "ms");
 
         try {
             this.getEntityStoreRegistry().registerSystem(new CableSystem.PlaceSystem(this.cableNetworkManager));
@@ -83,6 +94,15 @@ public class CablePlugin extends JavaPlugin {
         } catch (Exception e) {
             DebugLog.log("!! Failed to register Cable Systems: " + e.getMessage());
         }
+        try {
+            this.getEventRegistry().registerGlobal(ChunkPreLoadProcessEvent.class, event -> {
+                WorldChunk chunk = event.getChunk();
+                this.cableNetworkManager.onChunkLoadEvent(chunk.getWorld(), chunk.getIndex());
+            });
+            // Unloads are ECS events on the chunk store, not global ones; WorldHolder's unload sweep polls for them.
+        } catch (Exception e) {
+            DebugLog.log("!! Failed to register chunk events, falling back to polling: " + e.getMessage());
+        }
         /*
         try {
             this.getCommandRegistry().registerCommand(new PipeCommand(this.pipeNetworkManager));
@@ -102,6 +122,7 @@ public class CablePlugin extends JavaPlugin {
                    w.getValue().releaseLock();
                }
             }
+            this.cableNetworkManager.flushSaves();
         }));
         System.out.println("CablePlugin setup complete with CableNetworkManager!");
     }
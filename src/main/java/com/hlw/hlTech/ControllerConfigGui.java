@@ -17,6 +17,8 @@
 package com.hlw.hlTech;
 
 import com.hlw.hlTech.network.CableNetworkManager;
+import com.hlw.hlTech.network.CableNode;
+import com.hlw.hlTech.network.ItemFilter;
 import com.hlw.hlTech.network.NodeHolder;
 import com.hlw.hlTech.network.OutputData;
 import com.hlw.hlTech.util.BlockPos;
@@ -52,11 +54,14 @@ import org.jspecify.annotations.NonNull;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfigGui.ControllerEventData> {
     private static final Value<String> MODE_BUTTON_STYLE = Value.ref("Common.ui", "SecondaryTextButtonStyle");
     private static final Value<String> MODE_BUTTON_SELECTED_STYLE = Value.ref("Common.ui", "DefaultTextButtonStyle");
+    private static final int[] ROUTE_INTERVALS_MS = {0, 1000, 2000, 5000, 10000, 30000, 60000};
+    private static final int MAX_ROUTE_PRIORITY = 99;
     private final World world;
     private final UUID worldId;
     private final int x;
@@ -102,6 +107,7 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
         commandBuilder.set("#PositionLabelOutput.Visible",false);
         commandBuilder.set("#BackToInputButton.Visible",false);
         commandBuilder.set("#BackToOutputButton.Visible",false);
+        commandBuilder.set("#StrategyButton.Visible",false);
         commandBuilder.set("#PlayerInventorySection.Visible",false);
 
 
@@ -334,10 +340,10 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
                         }
 
                         if(node.controllerNode.InputsAndOutputs.get(this.selectedInput) != null && node.controllerNode.InputsAndOutputs.get(this.selectedInput).stream().anyMatch((a)-> a.outputPos.equals(selectedOutput))){
-                            node.controllerNode.RemoveInputOutput(this.selectedInput,this.selectedOutput);
+                            wh.removeRoute(node,this.selectedInput,this.selectedOutput);
                         }
                         else{
-                            node.controllerNode.AddOrModifyInputOutput(this.selectedInput,new OutputData(this.selectedOutput,0,true,new ArrayList<>()));
+                            wh.setRoute(node,this.selectedInput,new OutputData(this.selectedOutput,0,true,new ArrayList<>()));
                         }
 
                         handleSelectInput(ref,store,data,node,selectedInput, builder,eventBuilder);
@@ -401,6 +407,7 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
                         }
                         else{
                             dataset.getFirst().allowAll = !dataset.getFirst().allowAll;
+                            wh.onRouteModified(node,this.selectedInput,dataset.getFirst());
                             handleSelectInput(ref,store,data,node,selectedInput,builder,event);
 
                         }
@@ -415,6 +422,115 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
 
 
 
+                }
+                else if(action.equals("cyclestrategy")){
+                    UICommandBuilder builder = new UICommandBuilder();
+                    UIEventBuilder event = new UIEventBuilder();
+
+                    var wh = manager.worldHolders.get(store.getExternalData().getWorld().getWorldConfig().getUuid());
+                    if(wh == null){
+                        DebugLog.log("World holder is null ! (UI cyclestrategy)");
+                        this.close();
+                        return;
+                    }
+                    try{
+                        wh.acquireLock();
+                        var node = wh.getNodeAt( new BlockPos(this.x,this.y,this.z));
+                        if(node == null || node.controllerNode == null){
+                            DebugLog.log("Controller is is null ! (UI cyclestrategy)");
+                            this.close();
+                            return;
+                        }
+                        if(this.selectedInput == null) return;
+                        CableNode.DistributionStrategy[] strategies = CableNode.DistributionStrategy.values();
+                        CableNode.DistributionStrategy current = node.controllerNode.getDistributionStrategy(this.selectedInput);
+                        wh.setDistributionStrategy(node, this.selectedInput, strategies[(current.ordinal() + 1) % strategies.length]);
+                        handleSelectInput(ref,store,data,node,selectedInput,builder,event);
+                    }
+                    finally {
+                        wh.releaseLock();
+                    }
+                    this.sendUpdate(builder,event,false);
+                }
+                else if(action.startsWith("cycleinterval:")){
+                    UICommandBuilder builder = new UICommandBuilder();
+                    UIEventBuilder event = new UIEventBuilder();
+                    BlockPos pos = null;
+                    try{
+                        pos = BlockPos.FromString(action.split(":")[1]);
+
+                    }
+                    catch(Exception e){
+                        DebugLog.log("Error building Blockpos in UI : " + e.getMessage());
+                        return;
+                    }
+                    BlockPos finalPos = pos;
+
+                    var wh = manager.worldHolders.get(store.getExternalData().getWorld().getWorldConfig().getUuid());
+                    if(wh == null){
+                        DebugLog.log("World holder is null ! (UI cycleinterval)");
+                        this.close();
+                        return;
+                    }
+                    try{
+                        wh.acquireLock();
+                        var node = wh.getNodeAt( new BlockPos(this.x,this.y,this.z));
+                        if(node == null || node.controllerNode == null){
+                            DebugLog.log("Controller is is null ! (UI cycleinterval)");
+                            this.close();
+                            return;
+                        }
+                        var outputs = node.controllerNode.InputsAndOutputs.get(this.selectedInput);
+                        var dataset = outputs == null ? List.<OutputData>of() : outputs.stream().filter(a-> a.outputPos.equals(finalPos)).toList();
+                        if(dataset.isEmpty()) return;
+                        wh.setRouteInterval(node, this.selectedInput, finalPos, nextInterval(dataset.getFirst().intervalMs));
+                        handleSelectInput(ref,store,data,node,selectedInput,builder,event);
+                    }
+                    finally {
+                        wh.releaseLock();
+                    }
+                    this.sendUpdate(builder,event,false);
+                }
+                else if(action.startsWith("priority:")){
+                    UICommandBuilder builder = new UICommandBuilder();
+                    UIEventBuilder event = new UIEventBuilder();
+                    BlockPos pos = null;
+                    int step = 0;
+                    try{
+                        pos = BlockPos.FromString(action.split(":")[1]);
+                        step = Integer.parseInt(value);
+                    }
+                    catch(Exception e){
+                        DebugLog.log("Error reading priority change in UI : " + e.getMessage());
+                        return;
+                    }
+                    BlockPos finalPos = pos;
+
+                    var wh = manager.worldHolders.get(store.getExternalData().getWorld().getWorldConfig().getUuid());
+                    if(wh == null){
+                        DebugLog.log("World holder is null ! (UI priority)");
+                        this.close();
+                        return;
+                    }
+                    try{
+                        wh.acquireLock();
+                        var node = wh.getNodeAt( new BlockPos(this.x,this.y,this.z));
+                        if(node == null || node.controllerNode == null){
+                            DebugLog.log("Controller is is null ! (UI priority)");
+                            this.close();
+                            return;
+                        }
+                        var outputs = node.controllerNode.InputsAndOutputs.get(this.selectedInput);
+                        var dataset = outputs == null ? List.<OutputData>of() : outputs.stream().filter(a-> a.outputPos.equals(finalPos)).toList();
+                        if(dataset.isEmpty()) return;
+                        int priority = Math.max(-MAX_ROUTE_PRIORITY, Math.min(MAX_ROUTE_PRIORITY, dataset.getFirst().priority + step));
+                        wh.setRoutePriority(node, this.selectedInput, finalPos, priority);
+                        handleSelectInput(ref,store,data,node,selectedInput,builder,event);
+                    }
+                    finally {
+                        wh.releaseLock();
+                    }
+                    this.sendUpdate(builder,event,false);
                 }
                 else if (action.startsWith("selectlistmode:")){
                     BlockPos pos = null;
@@ -483,8 +599,8 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
                         var dataset = node.controllerNode.InputsAndOutputs.get(this.selectedInput).stream().filter(a-> a.outputPos.equals(finalPos)).toList();
                         if(dataset.isEmpty())return;
                         else{
-                            var l = dataset.getFirst().itemIds;
-                            if(!l.contains(itemId))l.add(itemId);
+                            dataset.getFirst().addItemId(itemId);
+                            wh.onRouteModified(node,this.selectedInput,dataset.getFirst());
                         }
 
                         this.handleSelectListMode(ref,store,data,node,selectedOutput,builder,event);
@@ -495,10 +611,50 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
                     }
 
 
+                    this.sendUpdate(builder,event,false);
+                }
+                else if(action.equals("addpattern")){
+                    String entry = data.pattern.trim();
+                    if(entry.isEmpty()) return;
+
+                    UICommandBuilder builder = new UICommandBuilder();
+                    UIEventBuilder event = new UIEventBuilder();
+
+                    BlockPos finalPos = selectedOutput;
+
+                    var wh = manager.worldHolders.get(store.getExternalData().getWorld().getWorldConfig().getUuid());
+                    if(wh == null){
+                        DebugLog.log("World holder is null ! (UI addpattern)");
+                        this.close();
+                        return;
+                    }
+                    try{
+                        wh.acquireLock();
+                        var node = wh.getNodeAt( new BlockPos(this.x,this.y,this.z));
+                        if(node == null || node.controllerNode == null){
+                            DebugLog.log("Controller is is null ! (UI addpattern)");
+                            this.close();
+                            return;
+                        }
+
+                        var outputs = node.controllerNode.InputsAndOutputs.get(this.selectedInput);
+                        var dataset = outputs == null ? List.<OutputData>of() : outputs.stream().filter(a-> a.outputPos.equals(finalPos)).toList();
+                        if(dataset.isEmpty())return;
+                        else if(dataset.getFirst().addItemId(entry)){
+                            wh.onRouteModified(node,this.selectedInput,dataset.getFirst());
+                        }
+
+                        this.handleSelectListMode(ref,store,data,node,selectedOutput,builder,event);
+
+                    }
+                    finally {
+                        wh.releaseLock();
+                    }
+
                     this.sendUpdate(builder,event,false);
                 }
                 else if(action.startsWith("removefromfilter:")){
-                    String itemId = action.split(":")[1];
+                    String itemId = action.substring("removefromfilter:".length());
 
                     UICommandBuilder builder = new UICommandBuilder();
                     UIEventBuilder event = new UIEventBuilder();
@@ -525,8 +681,8 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
                         var dataset = node.controllerNode.InputsAndOutputs.get(this.selectedInput).stream().filter(a-> a.outputPos.equals(finalPos)).toList();
                         if(dataset.isEmpty())return;
                         else{
-                            var l = dataset.getFirst().itemIds;
-                            l.remove(itemId);
+                            dataset.getFirst().removeItemId(itemId);
+                            wh.onRouteModified(node,this.selectedInput,dataset.getFirst());
                         }
 
                         this.handleSelectListMode(ref,store,data,node,selectedOutput,builder,event);
@@ -564,14 +720,20 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
             if(selectedOutputList == null) return;
             var selectedOutputData = selectedOutputList.stream().filter(a-> a.outputPos.equals(selectedOutput)).toList().getFirst();
             if(selectedOutputData == null)return;
+            commandBuilder.set("#StrategyButton.Visible",false);
             commandBuilder.append("#ItemGrid","Pages/ControllerFilterContainer.ui");
+            eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#AddPatternButton", (new EventData()).append("Action", "addpattern").append("@Pattern", "#PatternField.Value"), false);
             for(var itemId : selectedOutputData.itemIds){
                 String selector = "#FilterGrid[" + i + "]";
                 commandBuilder.append("#FilterGrid", "Pages/ControllerFilterSlot.ui");
                 commandBuilder.set(selector + " #ItemIcon.ItemId",itemId);
                 Item itemAsset = (Item)Item.getAssetMap().getAsset(itemId);
-                String translationKey = itemAsset != null ? itemAsset.getTranslationKey() : itemId;
-                commandBuilder.set(selector + ".TooltipText", Message.translation(translationKey));
+                if (itemAsset == null && ItemFilter.isPattern(itemId)) {
+                    commandBuilder.set(selector + ".TooltipText", Message.raw(itemId));
+                } else {
+                    String translationKey = itemAsset != null ? itemAsset.getTranslationKey() : itemId;
+                    commandBuilder.set(selector + ".TooltipText", Message.translation(translationKey));
+                }
                 eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, selector , (new EventData()).append("Action", "removefromfilter:" + itemId), false);
 
                 i++;
@@ -651,6 +813,9 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
 
             builder.clear("#ItemGrid");
             eventBuilder.addEventBinding(CustomUIEventBindingType.Activating,  "#BackToInputButton", (new EventData()).append("Action", "selectinput:" + selectedInput), false);
+            builder.set("#StrategyButton.Visible",true);
+            builder.set("#StrategyButton.Text", strategyText(node.controllerNode.getDistributionStrategy(pos)));
+            eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#StrategyButton", (new EventData()).append("Action", "cyclestrategy"), false);
             var selectedOutputList = node.controllerNode.InputsAndOutputs.get(pos);
             for (var inventory : node.getNetwork().connectedInventories.entrySet()){
                 var key = inventory.getKey();
@@ -741,11 +906,16 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
                         builder.set(selector + " #InfoLabelInputOutput.Text","Set as output !");
                         builder.set(selector + " #OutputDataGroup.Visible",true);
                         builder.set((selector) + " #SetListMode.Text", dataset.get(0).allowAll ? "Blacklist" : "Whitelist");
+                        builder.set(selector + " #IntervalButton.Text", intervalText(dataset.get(0).intervalMs));
+                        builder.set(selector + " #PriorityLabel.Text", "Priority " + dataset.get(0).priority);
                     }
 
                 }
                 eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, selector + " #SetListMode", (new EventData()).append("Action", "swaplistmode:" + key), false);
                 eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, selector + " #SelectListMode", (new EventData()).append("Action", "selectlistmode:" + key), false);
+                eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, selector + " #IntervalButton", (new EventData()).append("Action", "cycleinterval:" + key), false);
+                eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, selector + " #PriorityDownButton", (new EventData()).append("Action", "priority:" + key).append("Value", "-1"), false);
+                eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, selector + " #PriorityUpButton", (new EventData()).append("Action", "priority:" + key).append("Value", "1"), false);
 
                 eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, selector + " #ItemButton", (new EventData()).append("Action", "selectoutput:" + key), false);
                 eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#CloseButton", (new EventData()).append("Action", "close"), false);
@@ -765,10 +935,38 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
     }
 
 
+    /**
+     * The next preset after the current interval, wrapping back to "every pass".
+     */
+    private static int nextInterval(int intervalMs){
+        for(int preset : ROUTE_INTERVALS_MS){
+            if(preset > intervalMs) return preset;
+        }
+        return ROUTE_INTERVALS_MS[0];
+    }
+
+    private static String strategyText(CableNode.DistributionStrategy strategy){
+        return switch (strategy) {
+            case ROUND_ROBIN -> "Round robin";
+            case NEAREST -> "Nearest first";
+            case FARTHEST -> "Farthest first";
+            case BALANCED -> "Balanced";
+            case FILL_FIRST -> "Fill first";
+        };
+    }
+
+    private static String intervalText(int intervalMs){
+        if(intervalMs <= 0) return "Every pass";
+        if(intervalMs % 1000 == 0) return "Every " + (intervalMs / 1000) + "s";
+        return "Every " + intervalMs + "ms";
+    }
+
+
     public static class ControllerEventData {
         public static final BuilderCodec<ControllerEventData> CODEC;
         public String action = "";
         public String value = "";
+        public String pattern = "";
 
         static {
             CODEC = ((BuilderCodec.<ControllerEventData>builder(ControllerEventData.class, ControllerEventData::new)
@@ -778,6 +976,9 @@ public class ControllerConfigGui extends InteractiveCustomUIPage<ControllerConfi
                     .append(new KeyedCodec<>("Value", Codec.STRING),
                             (ControllerEventData e, String v) -> e.value = v != null ? v : "", (ControllerEventData e) -> e.value)
                     .add())
+                    .append(new KeyedCodec<>("@Pattern", Codec.STRING),
+                            (ControllerEventData e, String v) -> e.pattern = v != null ? v : "", (ControllerEventData e) -> e.pattern)
+                    .add()
                     .build();
         }
     }
@@ -6,6 +6,9 @@ import com.hypixel.hytale.component.system.tick.TickingSystem;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 
+/**
+ * Runs once per world store, and only advances that world's holder, on that world's thread.
+ */
 public class GlobalUpdateSystem extends TickingSystem<EntityStore> {
 
     private final CableNetworkManager manager;
@@ -16,8 +19,6 @@ public class GlobalUpdateSystem extends TickingSystem<EntityStore> {
     @Override
     public void tick(float dt, int index, Store<EntityStore> store) {
         World world = store.getExternalData().getWorld();
-        for(var wh : manager.worldHolders.entrySet()){
-            wh.getValue().tick(dt);
-        }
+        manager.tickWorld(world.getWorldConfig().getUuid(), dt);
     }
 }
\ No newline at end of file
@@ -20,189 +20,180 @@
 package com.hlw.hlTech.network;
 
 import com.hlw.hlTech.util.BlockPos;
-import com.hlw.hlTech.util.Direction;
+import com.hlw.hlTech.util.LongHashMap;
 import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Networks form a disjoint-set forest: joining two networks links the smaller one under the larger one (union by size)
+ * instead of re-adding its nodes. Nodes keep pointing at whatever network they were added to and resolve the
+ * current root through NodeHolder.getNetwork(), which compresses the path as it goes.
+ */
 public class CableNetwork {
-    private final Map<BlockPos, NodeHolder> nodes = new HashMap<>();
+    private CableNetwork parent = this;
+    private int size = 0;
+    private final Map<BlockPos, NodeHolder> controllers = new LinkedHashMap<>();
     private final Set<BlockPos> inputNodes = new HashSet();
     private final Set<BlockPos> outputNodes = new HashSet();
     private final Map<BlockPos, Integer> inputRoundRobinIndex = new HashMap();
     private long tickCount = 0L;
     public final Map<BlockPos, ItemContainer> connectedInventories = new ConcurrentHashMap<>();
+    private int topologyVersion = 0;
+    private NetworkDistances distances;
+    private boolean dormant = false;
 
 
 
     public void addNode(NodeHolder node) {
-        this.nodes.put(node.getPosition(), node);
+        ++this.size;
+        this.onTopologyChanged();
+        if (node.controllerNode != null) {
+            this.controllers.put(node.getPosition(), node);
+        }
         node.setNetwork(this);
     }
 
-    public NodeHolder getNode(BlockPos position) {
-        return (NodeHolder) this.nodes.get(position);
+    public void removeNode(NodeHolder node) {
+        --this.size;
+        this.onTopologyChanged();
+        if (node.controllerNode != null) {
+            this.controllers.remove(node.getPosition());
+        }
     }
-    public Collection<NodeHolder> getNodes() {
-        return this.nodes.values();
+
+    public Collection<NodeHolder> getControllers() {
+        return this.controllers.values();
     }
     public int size() {
-        return this.nodes.size();
+        return this.size;
     }
     public boolean isEmpty() {
-        return this.nodes.isEmpty();
+        return this.size == 0;
     }
 
-    public void removeInventory(BlockPos pos){
-        connectedInventories.remove(pos);
-        for(var node : nodes.entrySet()){
-            if(node.getValue().controllerNode!=null){
-                node.getValue().controllerNode.removeInventory(pos);
-            }
+    public CableNetwork find() {
+        CableNetwork root = this;
+        while (root.parent != root) {
+            root = root.parent;
         }
+        CableNetwork current = this;
+        while (current.parent != root) {
+            CableNetwork next = current.parent;
+            current.parent = root;
+            current = next;
+        }
+        return root;
     }
-    public long getTickCount() {
-        return this.tickCount;
+
+    /**
+     * Joins the networks of a and b and returns the surviving root.
+     * Only the controllers and inventories of the smaller network move; its nodes are untouched.
+     */
+    public static CableNetwork union(CableNetwork a, CableNetwork b) {
+        a = a.find();
+        b = b.find();
+        if (a == b) return a;
+        if (a.size < b.size) {
+            CableNetwork swap = a;
+            a = b;
+            b = swap;
+        }
+        b.parent = a;
+        a.size += b.size;
+        a.controllers.putAll(b.controllers);
+        a.connectedInventories.putAll(b.connectedInventories);
+        a.inputNodes.addAll(b.inputNodes);
+        a.outputNodes.addAll(b.outputNodes);
+        a.inputRoundRobinIndex.putAll(b.inputRoundRobinIndex);
+        b.controllers.clear();
+        b.connectedInventories.clear();
+        a.onTopologyChanged();
+        a.dormant = a.dormant && b.dormant;
+        b.distances = null;
+        return a;
     }
 
+    public void removeInventory(BlockPos pos){
+        connectedInventories.remove(pos);
+        this.onTopologyChanged();
+        for(var node : controllers.values()){
+            node.controllerNode.removeInventory(pos);
+        }
+    }
 
+    /**
+     * Nodes, connections or inventory links changed: distance tables and distance-based output orders are stale.
+     */
+    public void onTopologyChanged() {
+        ++this.topologyVersion;
+        this.distances = null;
+    }
 
-    public List<BlockPos> findPathToSpecificOutput(BlockPos start, BlockPos targetOutput) {
-        if (this.nodes.containsKey(start) && this.outputNodes.contains(targetOutput)) {
-            Queue<BlockPos> queue = new LinkedList();
-            Map<BlockPos, BlockPos> cameFrom = new HashMap();
-            Set<BlockPos> visited = new HashSet();
-            queue.add(start);
-            visited.add(start);
-            cameFrom.put(start, (BlockPos) null);
-
-            while(!queue.isEmpty()) {
-                BlockPos current = (BlockPos)queue.poll();
-                if (current.equals(targetOutput)) {
-                    return this.reconstructPath(cameFrom, current);
-                }
-
-                NodeHolder currentNode = (NodeHolder) this.nodes.get(current);
-                if (currentNode != null) {
-                    for(Direction dir : currentNode.getConnections()) {
-                        BlockPos neighbor = current.offset(dir);
-                        if (!visited.contains(neighbor) && this.nodes.containsKey(neighbor)) {
-                            visited.add(neighbor);
-                            cameFrom.put(neighbor, current);
-                            queue.add(neighbor);
-                        }
-                    }
-                }
-            }
-
-            return Collections.emptyList();
-        } else {
-            return Collections.emptyList();
-        }
+    /**
+     * Drops every inventory link and with it the container references; the network is skipped by transfers until
+     * an inventory is linked again.
+     */
+    public void park() {
+        this.connectedInventories.clear();
+        this.dormant = true;
+        this.onTopologyChanged();
     }
 
-    private List<BlockPos> reconstructPath(Map<BlockPos, BlockPos> cameFrom, BlockPos end) {
-        List<BlockPos> path = new ArrayList();
+    public void wake() {
+        this.dormant = false;
+    }
 
-        for(BlockPos current = end; current != null; current = (BlockPos)cameFrom.get(current)) {
-            path.add(0, current);
-        }
+    public boolean isDormant() {
+        return this.dormant;
+    }
 
-        return path;
+    public int getTopologyVersion() {
+        return this.topologyVersion;
     }
-/*
-    public List<BlockPos> getOrderedOutputCandidates(BlockPos start, CableNode.DistributionStrategy strategy) {
-        if (this.nodes.containsKey(start) && !this.outputNodes.isEmpty()) {
-            List<BlockPos> candidates = new ArrayList(this.outputNodes);
-            candidates.remove(start);
-            if (candidates.isEmpty()) {
-                return Collections.emptyList();
-            } else {
-                candidates.sort((a, b) -> {
-                    CableNode nodeA = (CableNode)this.nodes.get(a);
-                    CableNode nodeB = (CableNode)this.nodes.get(b);
-                    int pA = nodeA != null ? nodeA.getPriority() : 0;
-                    int pB = nodeB != null ? nodeB.getPriority() : 0;
-                    int cmp = Integer.compare(pB, pA);
-                    if (cmp != 0) {
-                        return cmp;
-                    } else {
-                        switch (strategy) {
-                            case NEAREST:
-                                return Double.compare(this.getDistanceSq(start, a), this.getDistanceSq(start, b));
-                            case FARTHEST:
-                                return Double.compare(this.getDistanceSq(start, b), this.getDistanceSq(start, a));
-                            case ROUND_ROBIN:
-                            default:
-                                int cX = Integer.compare(a.getX(), b.getX());
-                                if (cX != 0) {
-                                    return cX;
-                                } else {
-                                    int cY = Integer.compare(a.getY(), b.getY());
-                                    return cY != 0 ? cY : Integer.compare(a.getZ(), b.getZ());
-                                }
-                        }
-                    }
-                });
-                return strategy == CableNode.DistributionStrategy.ROUND_ROBIN ? this.applyPriorityGroupedRoundRobin(start, candidates) : candidates;
-            }
-        } else {
-            return Collections.emptyList();
+
+    /**
+     * Hop distances inside this network, built on first use after a topology change.
+     * The nodes are numbered by one walk from any controller: a network is connected, so one seed reaches all of it.
+     * Distances themselves are only computed per endpoint, by one BFS the first time that input is ordered.
+     * @param worldNodes the world's node map, which the table walks
+     */
+    public NetworkDistances getDistances(LongHashMap<NodeHolder> worldNodes) {
+        if (this.distances == null) {
+            NodeHolder seed = this.controllers.isEmpty() ? null : this.controllers.values().iterator().next();
+            this.distances = NetworkDistances.build(worldNodes, seed);
         }
+        return this.distances;
     }
-*/
-    /*
-    private List<BlockPos> applyPriorityGroupedRoundRobin(BlockPos start, List<BlockPos> sortedCandidates) {
-        List<BlockPos> finalOrder = new ArrayList();
-        int currentIndex = (Integer)this.inputRoundRobinIndex.getOrDefault(start, 0);
 
-        int j;
-        for(int i = 0; i < sortedCandidates.size(); i = j) {
-            int currentPriority = ((CableNode)this.nodes.get(sortedCandidates.get(i))).getPriority();
+    public long getTickCount() {
+        return this.tickCount;
+    }
 
-            for(j = i + 1; j < sortedCandidates.size() && ((CableNode)this.nodes.get(sortedCandidates.get(j))).getPriority() == currentPriority; ++j) {
-            }
 
-            List<BlockPos> group = new ArrayList(sortedCandidates.subList(i, j));
-            int groupSize = group.size();
-            Collections.rotate(group, -(currentIndex % groupSize));
-            finalOrder.addAll(group);
-        }
 
-        return finalOrder;
-    }
-    */
     public void onTransferSuccess(BlockPos start) {
-        //this.inputRoundRobinIndex.merge(start, 1, Integer::sum);
+        this.inputRoundRobinIndex.merge(start, 1, (a, b) -> (a + b) & Integer.MAX_VALUE);
     }
 
-    private double getDistanceSq(BlockPos p1, BlockPos p2) {
-        double dbX = (double)(p1.getX() - p2.getX());
-        double dbY = (double)(p1.getY() - p2.getY());
-        double dbZ = (double)(p1.getZ() - p2.getZ());
-        return dbX * dbX + dbY * dbY + dbZ * dbZ;
+    public int getRoundRobinIndex(BlockPos start) {
+        return this.inputRoundRobinIndex.getOrDefault(start, 0);
     }
 
-    public void merge(CableNetwork other) {
-        if (other != this) {
-            for(NodeHolder node : other.nodes.values()) {
-                this.addNode(node);
-            }
-            this.connectedInventories.putAll(other.connectedInventories);
-            this.inputNodes.addAll(other.inputNodes);
-            this.outputNodes.addAll(other.outputNodes);
-            this.inputRoundRobinIndex.putAll(other.inputRoundRobinIndex);
-        }
-
+    /**
+     * Carries an input's round-robin position over from the network its controller was split off from.
+     */
+    void copyRoundRobinIndex(CableNetwork from, BlockPos start) {
+        Integer index = from.inputRoundRobinIndex.get(start);
+        if (index != null) this.inputRoundRobinIndex.put(start, index);
     }
 
     public void tick() {
         ++this.tickCount;
 
-        for(NodeHolder node : new ArrayList<NodeHolder>(this.nodes.values())) {
-            if(node.controllerNode!= null)
-                node.tick();
+        for(NodeHolder node : this.controllers.values()) {
+            node.tick();
         }
 
     }
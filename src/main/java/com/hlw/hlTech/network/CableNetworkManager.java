@@ -43,6 +43,9 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 public class CableNetworkManager {
@@ -50,6 +53,34 @@ public class CableNetworkManager {
     private final Map<UUID, World> worldRegistry = new ConcurrentHashMap<>();
     public World getWorldFromRegistry(UUID uuid) {return  worldRegistry.get(uuid);}
     public final Map<UUID,WorldHolder> worldHolders = new ConcurrentHashMap<>();
+    private CableConfig config = new CableConfig();
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hlTech-network-save");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CableConfig getConfig() {
+        return this.config;
+    }
+    public void setConfig(CableConfig config) {
+        this.config = config;
+        ItemTags.setConfigTags(config.itemTags);
+    }
+    public ExecutorService getSaveExecutor() {
+        return this.saveExecutor;
+    }
+
+    /**
+     * Blocks until every save handed to the save executor so far has been written.
+     */
+    public void flushSaves() {
+        try {
+            this.saveExecutor.submit(() -> {}).get(30, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.out.println("Failed to flush node network saves: " + e.getMessage());
+        }
+    }
 /*
     private static final String SAVE_FILE_NAME = "pipe_networks.dat";
     private static final int SAVE_FORMAT_VERSION = 5;
@@ -90,6 +121,27 @@ public class CableNetworkManager {
         }
 
     }
+
+    /**
+     * Hands a chunk load from the engine to its world's holder. Worlds without nodes yet ignore it.
+     */
+    public void onChunkLoadEvent(World world, long chunkId) {
+        if (world == null) return;
+        WorldHolder holder = this.worldHolders.get(world.getWorldConfig().getUuid());
+        if (holder != null) {
+            holder.queueChunkLoad(chunkId);
+        }
+    }
+
+    /**
+     * Advances one world's holder. Each world's ticking system calls this for its own world only, on that world's thread.
+     */
+    public void tickWorld(UUID worldId, double deltaTime) {
+        WorldHolder holder = this.worldHolders.get(worldId);
+        if (holder != null) {
+            holder.tick(deltaTime);
+        }
+    }
 /*
     public void onPipePlaced(UUID worldId, BlockPos position) {
         this.dirty = true;
@@ -104,7 +104,9 @@ public class CableNode {
     public static enum DistributionStrategy {
         ROUND_ROBIN,
         NEAREST,
-        FARTHEST;
+        FARTHEST,
+        FILL_FIRST,
+        BALANCED;
     }
 
 
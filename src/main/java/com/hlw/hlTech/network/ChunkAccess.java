@@ -0,0 +1,52 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.ChunkBlockHelper;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+/**
+ * What a WorldHolder reads from its world: which chunks are loaded and the containers in them.
+ * A live world goes through ChunkBlockHelper; tests hand the holder their own.
+ */
+interface ChunkAccess {
+
+    boolean isAlive();
+
+    boolean isChunkLoaded(long chunkId);
+
+    /**
+     * True if the block at pos (following fillers) is a container block, whether or not its container is ready.
+     * False if its chunk isn't loaded.
+     */
+    boolean hasInventoryAt(BlockPos pos);
+
+    /**
+     * The container at pos, or null if there is none, it isn't ready yet or its chunk isn't loaded.
+     */
+    ItemContainer getItemContainer(BlockPos pos);
+
+    static ChunkAccess of(World world) {
+        return new ChunkAccess() {
+            @Override
+            public boolean isAlive() {
+                return world.isAlive();
+            }
+
+            @Override
+            public boolean isChunkLoaded(long chunkId) {
+                return ChunkBlockHelper.isChunkLoaded(world, chunkId);
+            }
+
+            @Override
+            public boolean hasInventoryAt(BlockPos pos) {
+                return ChunkBlockHelper.hasInventoryAt(world, pos);
+            }
+
+            @Override
+            public ItemContainer getItemContainer(BlockPos pos) {
+                return ChunkBlockHelper.getItemContainer(world, pos);
+            }
+        };
+    }
+}
@@ -0,0 +1,177 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.Direction;
+import com.hlw.hlTech.util.LongHashMap;
+
+import java.util.*;
+
+/**
+ * Inventory links that couldn't be made yet, one per (node, inventory, direction).
+ * A link whose inventory chunk isn't loaded waits in a per-chunk index and is handed back once, when that chunk loads.
+ * A link whose chunk is loaded but whose container isn't ready is retried on a timer, with the delay doubling per
+ * attempt, and dropped after maxAttempts.
+ * Entries handed back by takeChunk or takeDue stay known (so they keep their attempt count) until the caller resolves
+ * them with remove, waitForChunk or retryLater.
+ */
+class ConnectionRetryQueue {
+    private static final int MAX_DELAY_SHIFT = 5;
+
+    private final HashMap<Entry, Pending> pending = new HashMap<>();
+    private final LongHashMap<Set<Entry>> byChunk = new LongHashMap<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>(Comparator.comparingLong(Timer::dueMs));
+    private int waitingForChunks = 0;
+
+    record Entry(BlockPos nodePos, BlockPos inventoryPos, Direction direction) {
+    }
+
+    private static final class Pending {
+        final Entry entry;
+        int attempts = 0;
+        long chunkId = 0L;
+        boolean waitingForChunk = false;
+        long dueMs = Long.MAX_VALUE;
+
+        Pending(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    private static record Timer(long dueMs, Pending pending) {
+    }
+
+    /**
+     * Queues a fresh attempt for the next takeDue, forgetting earlier attempts; the link's surroundings just changed.
+     */
+    void add(Entry entry, long nowMs) {
+        Pending pending = this.getOrCreate(entry);
+        this.unlinkChunk(pending);
+        pending.attempts = 0;
+        this.schedule(pending, nowMs);
+    }
+
+    /**
+     * Parks an entry until chunkId loads. Time spent waiting doesn't count as an attempt.
+     */
+    void waitForChunk(Entry entry, long chunkId) {
+        Pending pending = this.getOrCreate(entry);
+        if (pending.waitingForChunk && pending.chunkId == chunkId) return;
+        this.unlinkChunk(pending);
+        pending.waitingForChunk = true;
+        pending.chunkId = chunkId;
+        pending.dueMs = Long.MAX_VALUE;
+        Set<Entry> entries = this.byChunk.get(chunkId);
+        if (entries == null) {
+            entries = new LinkedHashSet<>();
+            this.byChunk.put(chunkId, entries);
+        }
+        entries.add(entry);
+        ++this.waitingForChunks;
+    }
+
+    /**
+     * Schedules another attempt after baseMs, doubled for every attempt already made.
+     * @return false if the entry ran out of attempts and was dropped
+     */
+    boolean retryLater(Entry entry, long nowMs, long baseMs, int maxAttempts) {
+        Pending pending = this.getOrCreate(entry);
+        this.unlinkChunk(pending);
+        if (++pending.attempts > maxAttempts) {
+            this.pending.remove(entry);
+            return false;
+        }
+        this.schedule(pending, nowMs + (Math.max(1L, baseMs) << Math.min(pending.attempts - 1, MAX_DELAY_SHIFT)));
+        return true;
+    }
+
+    void remove(Entry entry) {
+        Pending pending = this.pending.remove(entry);
+        if (pending != null) this.unlinkChunk(pending);
+    }
+
+    /**
+     * Entries that were waiting for this chunk.
+     */
+    List<Entry> takeChunk(long chunkId) {
+        Set<Entry> entries = this.byChunk.remove(chunkId);
+        if (entries == null) return Collections.emptyList();
+        for (Entry entry : entries) {
+            Pending pending = this.pending.get(entry);
+            pending.waitingForChunk = false;
+            --this.waitingForChunks;
+        }
+        return new ArrayList<>(entries);
+    }
+
+    boolean hasDue(long nowMs) {
+        this.dropStaleTimers();
+        Timer next = this.timers.peek();
+        return next != null && next.dueMs() <= nowMs;
+    }
+
+    /**
+     * Entries whose retry time has come.
+     */
+    List<Entry> takeDue(long nowMs) {
+        ArrayList<Entry> due = new ArrayList<>();
+        while (this.hasDue(nowMs)) {
+            Pending pending = this.timers.poll().pending();
+            pending.dueMs = Long.MAX_VALUE;
+            due.add(pending.entry);
+        }
+        return due;
+    }
+
+    boolean isWaitingForChunk(long chunkId) {
+        return this.byChunk.containsKey(chunkId);
+    }
+
+    int size() {
+        return this.pending.size();
+    }
+
+    int waitingForChunks() {
+        return this.waitingForChunks;
+    }
+
+    int waitingChunkCount() {
+        return this.byChunk.size();
+    }
+
+    private Pending getOrCreate(Entry entry) {
+        Pending pending = this.pending.get(entry);
+        if (pending == null) {
+            pending = new Pending(entry);
+            this.pending.put(entry, pending);
+        }
+        return pending;
+    }
+
+    private void schedule(Pending pending, long dueMs) {
+        pending.dueMs = dueMs;
+        this.timers.add(new Timer(dueMs, pending));
+    }
+
+    private void unlinkChunk(Pending pending) {
+        if (!pending.waitingForChunk) return;
+        pending.waitingForChunk = false;
+        --this.waitingForChunks;
+        Set<Entry> entries = this.byChunk.get(pending.chunkId);
+        if (entries != null) {
+            entries.remove(pending.entry);
+            if (entries.isEmpty()) this.byChunk.remove(pending.chunkId);
+        }
+    }
+
+    /**
+     * Timers are never removed in place; one is stale once its entry was resolved or rescheduled.
+     */
+    private void dropStaleTimers() {
+        Timer next;
+        while ((next = this.timers.peek()) != null) {
+            Pending pending = next.pending();
+            if (this.pending.get(pending.entry) == pending && !pending.waitingForChunk && pending.dueMs == next.dueMs()) return;
+            this.timers.poll();
+        }
+    }
+}
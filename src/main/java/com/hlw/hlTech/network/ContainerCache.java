@@ -0,0 +1,193 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.ChunkBlockHelper;
+import com.hypixel.hytale.event.EventRegistration;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolved ItemContainers by position, so transfers don't go through getChunkIfLoaded and the filler lookup every pass.
+ * Resolved entries are dropped by block break/place and when their chunk is no longer loaded, and resolved again on the next miss.
+ * The positions of linked inventories are kept until the inventory itself is removed.
+ * Every cached container is watched through ItemContainer.registerChangeEvent, the same hook the server's player
+ * Inventory uses to follow its sections; getVersion changes whenever its content does, which lets idle routes be
+ * skipped without scanning their slots. Versions come from one counter, so a container that is resolved again never
+ * reuses a version seen before. A container this cache doesn't hold reports version -1.
+ */
+public class ContainerCache {
+    private final Map<BlockPos, ItemContainer> containers = new HashMap<>();
+    private final Set<BlockPos> linkedPositions = new HashSet<>();
+    private final Map<Long, Set<BlockPos>> positionsByChunk = new HashMap<>();
+    private final Map<ItemContainer, Watch> watches = new IdentityHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private long hits = 0L;
+    private long misses = 0L;
+    private long invalidations = 0L;
+
+    ItemContainer get(ChunkAccess chunks, BlockPos pos) {
+        ItemContainer container = this.containers.get(pos);
+        if (container != null) {
+            ++this.hits;
+            return container;
+        }
+        ++this.misses;
+        container = chunks.getItemContainer(pos);
+        if (container != null) {
+            this.put(pos, container);
+        }
+        return container;
+    }
+
+    public void put(BlockPos pos, ItemContainer container) {
+        this.linkedPositions.add(pos);
+        ItemContainer previous = this.containers.put(pos, container);
+        if (previous == container) return;
+        if (previous != null) this.release(previous);
+        this.watch(container);
+        this.positionsByChunk.computeIfAbsent(ChunkBlockHelper.getChunkIdAt(pos), k -> new HashSet<>()).add(pos);
+    }
+
+    public boolean contains(BlockPos pos) {
+        return this.linkedPositions.contains(pos);
+    }
+
+    public void remove(BlockPos pos) {
+        this.linkedPositions.remove(pos);
+        this.invalidate(pos);
+    }
+
+    public void invalidate(BlockPos pos) {
+        ItemContainer removed = this.containers.remove(pos);
+        if (removed == null) return;
+        this.release(removed);
+        ++this.invalidations;
+        long chunkId = ChunkBlockHelper.getChunkIdAt(pos);
+        Set<BlockPos> positions = this.positionsByChunk.get(chunkId);
+        if (positions != null) {
+            positions.remove(pos);
+            if (positions.isEmpty()) {
+                this.positionsByChunk.remove(chunkId);
+            }
+        }
+    }
+
+    public void invalidateChunk(long chunkId) {
+        Set<BlockPos> positions = this.positionsByChunk.remove(chunkId);
+        if (positions == null) return;
+        for (BlockPos pos : positions) {
+            ItemContainer removed = this.containers.remove(pos);
+            if (removed != null) this.release(removed);
+        }
+        this.invalidations += positions.size();
+    }
+
+    /**
+     * One loaded check per chunk holding cached containers, instead of one per container per route.
+     * @return the chunks that were dropped
+     */
+    List<Long> dropUnloadedChunks(ChunkAccess chunks) {
+        if (this.positionsByChunk.isEmpty()) return Collections.emptyList();
+        List<Long> unloaded = null;
+        for (Long chunkId : this.positionsByChunk.keySet()) {
+            if (!chunks.isChunkLoaded(chunkId)) {
+                if (unloaded == null) unloaded = new ArrayList<>();
+                unloaded.add(chunkId);
+            }
+        }
+        if (unloaded == null) return Collections.emptyList();
+        for (Long chunkId : unloaded) {
+            this.invalidateChunk(chunkId);
+        }
+        return unloaded;
+    }
+
+    /**
+     * Content version of a cached container, or -1 if it isn't cached (its changes aren't followed).
+     */
+    public long getVersion(ItemContainer container) {
+        Watch watch = this.watches.get(container);
+        return watch == null ? -1L : watch.version;
+    }
+
+    /**
+     * Items per slot, the fill measure balanced distribution compares; stack limits aren't known here, so between
+     * identical containers this orders them by how full they are. Cached containers only recompute it after a change.
+     */
+    public double getFillLevel(ItemContainer container) {
+        Watch watch = this.watches.get(container);
+        if (watch != null && watch.fillVersion == watch.version) {
+            return watch.fill;
+        }
+        double fill = computeFill(container);
+        if (watch != null) {
+            watch.fill = fill;
+            watch.fillVersion = watch.version;
+        }
+        return fill;
+    }
+
+    private static double computeFill(ItemContainer container) {
+        short capacity = container.getCapacity();
+        if (capacity <= 0) return Double.MAX_VALUE;
+        long items = 0L;
+        for (short slot = 0; slot < capacity; ++slot) {
+            ItemStack stack = container.getItemStack(slot);
+            if (stack != null && !stack.isEmpty()) items += stack.getQuantity();
+        }
+        return (double) items / capacity;
+    }
+
+    private void watch(ItemContainer container) {
+        Watch watch = this.watches.get(container);
+        if (watch != null) {
+            ++watch.references;
+            return;
+        }
+        Watch created = new Watch(this.versions.incrementAndGet());
+        created.registration = container.registerChangeEvent(event -> created.version = this.versions.incrementAndGet());
+        this.watches.put(container, created);
+    }
+
+    private void release(ItemContainer container) {
+        Watch watch = this.watches.get(container);
+        if (watch == null || --watch.references > 0) return;
+        this.watches.remove(container);
+        watch.registration.unregister();
+    }
+
+    public int size() {
+        return this.containers.size();
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getInvalidations() {
+        return this.invalidations;
+    }
+
+    public String getStats() {
+        return "Containers: " + this.containers.size() + "/" + this.linkedPositions.size() + " (" + this.watches.size() + " watched) in " + this.positionsByChunk.size() + " chunks, Hits: " + this.hits + ", Misses: " + this.misses + ", Invalidated: " + this.invalidations;
+    }
+
+    private static class Watch {
+        volatile long version;
+        long fillVersion = -1L;
+        double fill;
+        int references = 1;
+        EventRegistration registration;
+
+        Watch(long version) {
+            this.version = version;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.hlw.hlTech.network;
 
 import com.hlw.hlTech.util.BlockPos;
 import com.hlw.hlTech.util.Direction;
+import com.hlw.hlTech.util.LongHashMap;
 
 import java.util.*;
 import java.util.stream.Stream;
@@ -12,6 +13,9 @@ public class ControllerNode {
     private final Set<Direction> connections;
     private CableNetwork network;
     public Map<BlockPos, ArrayList<OutputData>> InputsAndOutputs = new HashMap<>();
+    private Map<BlockPos, CableNode.DistributionStrategy> inputStrategies = new HashMap<>();
+    private final Map<BlockPos, OrderedOutputs> outputOrders = new HashMap<>();
+    private int routesVersion = 0;
     int ticksSinceLastTransfer = 0;
 
     public ControllerNode(UUID worldId, BlockPos position) {
@@ -43,6 +47,8 @@ public class ControllerNode {
 
     }
     public void removeInventory(BlockPos pos){
+        ++this.routesVersion;
+        this.inputStrategies.remove(pos);
         this.InputsAndOutputs.remove(pos);
         List<BlockPos> entriesToRemove = new ArrayList<>() ;
         for(var list : InputsAndOutputs.entrySet()){
@@ -61,6 +67,7 @@ public class ControllerNode {
     }
 
     public void AddOrModifyInputOutput(BlockPos input, OutputData output){
+        ++this.routesVersion;
         var outputlist = InputsAndOutputs.get(input);
         if(outputlist == null){
             outputlist = new ArrayList<>();
@@ -83,11 +90,13 @@ public class ControllerNode {
     public void RemoveInputOutput(BlockPos input, BlockPos output){
         var outputlist = InputsAndOutputs.get(input);
         if(outputlist == null) return;
+        ++this.routesVersion;
         var filter = outputlist.stream().filter(a-> a.outputPos.equals(output)).toList();
 
         if(filter.size()>0){
             if(outputlist.size()<=1){
                 InputsAndOutputs.remove(input);
+                inputStrategies.remove(input);
             }
             else{
                 for(var o : filter){
@@ -99,6 +108,66 @@ public class ControllerNode {
 
     }
 
+    public CableNode.DistributionStrategy getDistributionStrategy(BlockPos input) {
+        return this.inputStrategies.getOrDefault(input, CableNode.DistributionStrategy.FILL_FIRST);
+    }
+
+    public void setDistributionStrategy(BlockPos input, CableNode.DistributionStrategy strategy) {
+        ++this.routesVersion;
+        if (strategy == null || strategy == CableNode.DistributionStrategy.FILL_FIRST) {
+            this.inputStrategies.remove(input);
+        } else {
+            this.inputStrategies.put(input, strategy);
+        }
+    }
+
+    /**
+     * Inputs that don't use FILL_FIRST.
+     */
+    public Map<BlockPos, CableNode.DistributionStrategy> getInputStrategies() {
+        return this.inputStrategies;
+    }
+
+    public void setInputStrategies(Map<BlockPos, CableNode.DistributionStrategy> inputStrategies) {
+        ++this.routesVersion;
+        this.inputStrategies = inputStrategies;
+    }
+
+    /**
+     * To be called when an OutputData's priority was changed in place.
+     */
+    public void invalidateOutputOrder() {
+        ++this.routesVersion;
+    }
+
+    /**
+     * The outputs of an input by priority, highest first, and within a priority in the input's strategy order.
+     * Rebuilt only when the routes or strategy of this controller changed since the last call, or, for distance
+     * based strategies, the network's topology.
+     */
+    public List<OutputData> getOrderedOutputs(BlockPos input, CableNetwork network, LongHashMap<NodeHolder> worldNodes) {
+        ArrayList<OutputData> outputs = this.InputsAndOutputs.get(input);
+        if (outputs == null) return null;
+        OutputSelector selector = OutputSelector.of(this.getDistributionStrategy(input));
+        boolean layoutDependent = selector.usesDistances() && network != null;
+        int topologyVersion = layoutDependent ? network.getTopologyVersion() : 0;
+        OrderedOutputs cached = this.outputOrders.get(input);
+        if (cached != null && cached.source() == outputs && cached.size() == outputs.size() && cached.version() == this.routesVersion
+                && (!layoutDependent || (cached.network() == network && cached.topologyVersion() == topologyVersion))) {
+            return cached.ordered();
+        }
+        ArrayList<OutputData> ordered = new ArrayList<>(outputs);
+        Comparator<OutputData> order = Comparator.comparingInt(o -> -o.priority);
+        Comparator<OutputData> strategyOrder = selector.order(input, layoutDependent ? network.getDistances(worldNodes) : null);
+        if (strategyOrder != null) order = order.thenComparing(strategyOrder);
+        ordered.sort(order);
+        this.outputOrders.put(input, new OrderedOutputs(outputs, outputs.size(), this.routesVersion, layoutDependent ? network : null, topologyVersion, ordered));
+        if (this.outputOrders.size() > this.InputsAndOutputs.size()) {
+            this.outputOrders.keySet().retainAll(this.InputsAndOutputs.keySet());
+        }
+        return ordered;
+    }
+
     public boolean hasConnection(Direction direction) {
         return this.connections.contains(direction);
     }
@@ -130,4 +199,7 @@ public class ControllerNode {
         String var10000 = String.valueOf(this.position);
         return "ControllerNode{pos=" + var10000 + ", connections=" + this.connections.size() + "}";
     }
+
+    private static record OrderedOutputs(ArrayList<OutputData> source, int size, int version, CableNetwork network, int topologyVersion, List<OutputData> ordered) {
+    }
 }
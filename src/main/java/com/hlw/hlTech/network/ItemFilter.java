@@ -0,0 +1,117 @@
+package com.hlw.hlTech.network;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * A route's filter list compiled for lookups. Entries are
+ * - exact item ids,
+ * - globs, where * matches any run of characters and ? a single one ("*_Ore_*", "Wood_*_Planks"),
+ * - tags starting with # ("#Blocks.Ores"), resolved through ItemTags.
+ * Every kind of entry matches regardless of case, since entries can be typed in by hand.
+ * An id listed with the exact case is one hash lookup. Anything else is evaluated once per item id and the answer is
+ * cached, so a slot check stays at most two map lookups however many patterns the route has.
+ */
+public final class ItemFilter {
+    private static final ItemFilter EMPTY = new ItemFilter(Collections.emptySet(), Collections.emptyList(), Collections.emptyList());
+
+    private final Set<String> exactIds;
+    private final Set<String> foldedIds;
+    private final List<Pattern> globs;
+    private final List<String> tags;
+    private final Map<String, Boolean> matchCache;
+    private volatile int tagGeneration;
+
+    private ItemFilter(Set<String> exactIds, List<Pattern> globs, List<String> tags) {
+        this.exactIds = exactIds;
+        this.foldedIds = new HashSet<>();
+        for (String id : exactIds) this.foldedIds.add(id.toLowerCase(Locale.ROOT));
+        this.globs = globs;
+        this.tags = tags;
+        this.matchCache = exactIds.isEmpty() && globs.isEmpty() && tags.isEmpty() ? null : new ConcurrentHashMap<>();
+        this.tagGeneration = ItemTags.generation();
+    }
+
+    public static ItemFilter compile(Collection<String> entries) {
+        if (entries.isEmpty()) return EMPTY;
+        Set<String> exactIds = new HashSet<>();
+        List<Pattern> globs = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        for (String entry : entries) {
+            if (entry == null || entry.isEmpty()) continue;
+            if (isTag(entry)) {
+                tags.add(entry.substring(1));
+            } else if (isGlob(entry)) {
+                globs.add(toRegex(entry));
+            } else {
+                exactIds.add(entry);
+            }
+        }
+        return new ItemFilter(exactIds, globs, tags);
+    }
+
+    public static boolean isTag(String entry) {
+        return entry.length() > 1 && entry.charAt(0) == '#';
+    }
+
+    public static boolean isGlob(String entry) {
+        return entry.indexOf('*') >= 0 || entry.indexOf('?') >= 0;
+    }
+
+    /**
+     * True if this entry is a glob or tag rather than a single item id.
+     */
+    public static boolean isPattern(String entry) {
+        return isTag(entry) || isGlob(entry);
+    }
+
+    public boolean matches(String itemId) {
+        if (this.exactIds.contains(itemId)) return true;
+        if (this.matchCache == null) return false;
+        if (!this.tags.isEmpty()) {
+            int generation = ItemTags.generation();
+            if (generation != this.tagGeneration) {
+                this.matchCache.clear();
+                this.tagGeneration = generation;
+            }
+        }
+        Boolean cached = this.matchCache.get(itemId);
+        if (cached != null) return cached;
+        boolean matched = this.evaluate(itemId);
+        this.matchCache.put(itemId, matched);
+        return matched;
+    }
+
+    private boolean evaluate(String itemId) {
+        if (this.foldedIds.contains(itemId.toLowerCase(Locale.ROOT))) return true;
+        for (Pattern glob : this.globs) {
+            if (glob.matcher(itemId).matches()) return true;
+        }
+        for (String tag : this.tags) {
+            if (ItemTags.hasTag(itemId, tag)) return true;
+        }
+        return false;
+    }
+
+    private static Pattern toRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 8);
+        int literalStart = -1;
+        for (int i = 0; i < glob.length(); ++i) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literalStart >= 0) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                    literalStart = -1;
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else if (literalStart < 0) {
+                literalStart = i;
+            }
+        }
+        if (literalStart >= 0) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+}
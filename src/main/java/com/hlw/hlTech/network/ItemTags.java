@@ -0,0 +1,70 @@
+package com.hlw.hlTech.network;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Resolves the "#Tag" entries of route filters.
+ * An item has a tag when the category lookup (set by the plugin from the item assets) returns that category or one
+ * below it ("#Blocks" covers "Blocks.Ores"), or when the tag is defined in CableConfig.itemTags and one of its
+ * patterns matches the item id.
+ * Filters cache their answers per item id; changing either source bumps the generation so those caches are dropped.
+ */
+public final class ItemTags {
+    private static volatile Function<String, Collection<String>> categoryLookup = itemId -> Collections.emptyList();
+    private static volatile Map<String, List<ItemFilter>> configTags = Collections.emptyMap();
+    private static volatile int generation = 0;
+
+    private ItemTags() {
+    }
+
+    public static void setCategoryLookup(Function<String, Collection<String>> lookup) {
+        categoryLookup = lookup == null ? itemId -> Collections.emptyList() : lookup;
+        ++generation;
+    }
+
+    /**
+     * Tag name -> item id patterns, as found in the config. Tags can't refer to other tags.
+     */
+    public static void setConfigTags(Map<String, List<String>> tags) {
+        Map<String, List<ItemFilter>> compiled = new HashMap<>();
+        if (tags != null) {
+            for (var entry : tags.entrySet()) {
+                List<ItemFilter> patterns = new ArrayList<>();
+                for (String pattern : entry.getValue()) {
+                    if (!ItemFilter.isTag(pattern)) patterns.add(ItemFilter.compile(List.of(pattern)));
+                }
+                compiled.put(entry.getKey().toLowerCase(Locale.ROOT), patterns);
+            }
+        }
+        configTags = compiled;
+        ++generation;
+    }
+
+    static int generation() {
+        return generation;
+    }
+
+    static boolean hasTag(String itemId, String tag) {
+        List<ItemFilter> patterns = configTags.get(tag.toLowerCase(Locale.ROOT));
+        if (patterns != null) {
+            for (ItemFilter pattern : patterns) {
+                if (pattern.matches(itemId)) return true;
+            }
+        }
+        Collection<String> categories;
+        try {
+            categories = categoryLookup.apply(itemId);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        if (categories == null) return false;
+        for (String category : categories) {
+            if (category == null || category.length() < tag.length()) continue;
+            if (category.regionMatches(true, 0, tag, 0, tag.length()) && (category.length() == tag.length() || category.charAt(tag.length()) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,127 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.Direction;
+import com.hlw.hlTech.util.LongHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Hop distances inside one network, for distance-aware output ordering.
+ * Nodes are numbered once when the table is built; the distances from an endpoint (a node, or an inventory linked to
+ * the network) are computed by one BFS the first time that endpoint is asked about and kept in an int array, so every
+ * later distance query from it is a lookup. CableNetwork drops the table on any topology change.
+ * An inventory counts one hop from each node that has a connection towards it.
+ */
+public class NetworkDistances {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final LongHashMap<NodeHolder> worldNodes;
+    private final LongHashMap<Integer> indexOf;
+    private final long[] positions;
+    private final LongHashMap<Tree> trees = new LongHashMap<>();
+
+    private NetworkDistances(LongHashMap<NodeHolder> worldNodes, LongHashMap<Integer> indexOf, long[] positions) {
+        this.worldNodes = worldNodes;
+        this.indexOf = indexOf;
+        this.positions = positions;
+    }
+
+    /**
+     * Numbers the nodes of seed's network by walking its connections.
+     */
+    static NetworkDistances build(LongHashMap<NodeHolder> worldNodes, NodeHolder seed) {
+        LongHashMap<Integer> indexOf = new LongHashMap<>();
+        long[] positions = new long[16];
+        int count = 0;
+        if (seed != null) {
+            long start = seed.getPosition().asLong();
+            indexOf.put(start, 0);
+            positions[count++] = start;
+            for (int head = 0; head < count; ++head) {
+                long key = positions[head];
+                NodeHolder node = worldNodes.get(key);
+                for (Direction dir : node.getConnections()) {
+                    long next = BlockPos.offset(key, dir);
+                    if (indexOf.containsKey(next) || !worldNodes.containsKey(next)) continue;
+                    if (count == positions.length) positions = Arrays.copyOf(positions, count * 2);
+                    indexOf.put(next, count);
+                    positions[count++] = next;
+                }
+            }
+        }
+        return new NetworkDistances(worldNodes, indexOf, Arrays.copyOf(positions, count));
+    }
+
+    public int size() {
+        return this.positions.length;
+    }
+
+    /**
+     * Hops from one endpoint to another, or -1 if either isn't part of this network or they aren't connected.
+     */
+    public int distance(BlockPos from, BlockPos to) {
+        Tree tree = this.tree(from.asLong());
+        if (tree == null) return -1;
+        long target = to.asLong();
+        Integer index = this.indexOf.get(target);
+        if (index != null) return tree.distance[index];
+        int best = -1;
+        for (Direction dir : DIRECTIONS) {
+            Integer neighbor = this.linkedNeighbor(target, dir);
+            if (neighbor == null || tree.distance[neighbor] < 0) continue;
+            int hops = tree.distance[neighbor] + 1;
+            if (best < 0 || hops < best) best = hops;
+        }
+        return best;
+    }
+
+    private Tree tree(long from) {
+        Tree tree = this.trees.get(from);
+        if (tree != null) return tree;
+        int[] distance = new int[this.positions.length];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[this.positions.length];
+        int tail = 0;
+        Integer start = this.indexOf.get(from);
+        if (start != null) {
+            distance[start] = 0;
+            queue[tail++] = start;
+        } else {
+            for (Direction dir : DIRECTIONS) {
+                Integer neighbor = this.linkedNeighbor(from, dir);
+                if (neighbor == null || distance[neighbor] >= 0) continue;
+                distance[neighbor] = 1;
+                queue[tail++] = neighbor;
+            }
+            if (tail == 0) return null;
+        }
+        for (int head = 0; head < tail; ++head) {
+            int current = queue[head];
+            long key = this.positions[current];
+            for (Direction dir : this.worldNodes.get(key).getConnections()) {
+                Integer next = this.indexOf.get(BlockPos.offset(key, dir));
+                if (next == null || distance[next] >= 0) continue;
+                distance[next] = distance[current] + 1;
+                queue[tail++] = next;
+            }
+        }
+        tree = new Tree(distance);
+        this.trees.put(from, tree);
+        return tree;
+    }
+
+    /**
+     * Index of the node next to an inventory in direction dir, if that node connects back to the inventory.
+     */
+    private Integer linkedNeighbor(long inventory, Direction dir) {
+        long neighborPos = BlockPos.offset(inventory, dir);
+        Integer neighbor = this.indexOf.get(neighborPos);
+        if (neighbor == null) return null;
+        NodeHolder node = this.worldNodes.get(neighborPos);
+        return node != null && node.getConnections().contains(dir.getOpposite()) ? neighbor : null;
+    }
+
+    private static record Tree(int[] distance) {
+    }
+}
@@ -0,0 +1,297 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.LongHashMap;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append-only log of node and route mutations since the last full snapshot.
+ * Records are buffered under the world lock and appended to <uuid>.cable_networks.journal by the save thread.
+ * The header carries the epoch of the snapshot the records apply to; after a crash between writing a snapshot
+ * and truncating the journal, the epochs differ and the stale records are ignored.
+ */
+public class NetworkJournal {
+    public static final int JOURNAL_VERSION = 2;
+
+    private static final byte NODE_PLACED = 1;
+    private static final byte NODE_REMOVED = 2;
+    private static final byte ROUTE_SET = 3;
+    private static final byte ROUTE_REMOVED = 4;
+    private static final byte INVENTORY_UNLINKED = 5;
+    private static final byte ROUTE_INTERVAL = 6;
+    private static final byte INPUT_STRATEGY = 7;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(this.buffer);
+    private long bytesSinceSnapshot = 0L;
+
+    public void recordNodePlaced(NodeHolder.NodeType type, BlockPos position) {
+        try {
+            this.out.writeByte(NODE_PLACED);
+            this.out.writeByte(type.ordinal());
+            this.out.writeLong(position.asLong());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void recordNodeRemoved(BlockPos position) {
+        try {
+            this.out.writeByte(NODE_REMOVED);
+            this.out.writeLong(position.asLong());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void recordRouteSet(BlockPos controller, BlockPos input, OutputData output) {
+        try {
+            this.out.writeByte(ROUTE_SET);
+            this.out.writeLong(controller.asLong());
+            this.out.writeLong(input.asLong());
+            output.writeToDataStream(this.out);
+            if (output.intervalMs > 0) {
+                this.out.writeByte(ROUTE_INTERVAL);
+                this.out.writeLong(controller.asLong());
+                this.out.writeLong(input.asLong());
+                this.out.writeLong(output.outputPos.asLong());
+                this.out.writeInt(output.intervalMs);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void recordInputStrategy(BlockPos controller, BlockPos input, CableNode.DistributionStrategy strategy) {
+        try {
+            this.out.writeByte(INPUT_STRATEGY);
+            this.out.writeLong(controller.asLong());
+            this.out.writeLong(input.asLong());
+            this.out.writeByte(strategy.ordinal());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void recordRouteRemoved(BlockPos controller, BlockPos input, BlockPos output) {
+        try {
+            this.out.writeByte(ROUTE_REMOVED);
+            this.out.writeLong(controller.asLong());
+            this.out.writeLong(input.asLong());
+            this.out.writeLong(output.asLong());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void recordInventoryUnlinked(BlockPos controller, BlockPos inventory) {
+        try {
+            this.out.writeByte(INVENTORY_UNLINKED);
+            this.out.writeLong(controller.asLong());
+            this.out.writeLong(inventory.asLong());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records buffered since the last call, or null if there are none.
+     */
+    public byte[] takePending() {
+        if (this.buffer.size() == 0) return null;
+        byte[] records = this.buffer.toByteArray();
+        this.buffer.reset();
+        this.bytesSinceSnapshot += records.length;
+        return records;
+    }
+
+    /**
+     * Called when a full snapshot is taken: everything buffered so far is part of it.
+     */
+    public void onSnapshot() {
+        this.buffer.reset();
+        this.bytesSinceSnapshot = 0L;
+    }
+
+    public long getBytesSinceSnapshot() {
+        return this.bytesSinceSnapshot;
+    }
+
+    static void append(Path journalFile, byte[] records, long epoch) throws IOException {
+        if (journalFile.getParent() != null) {
+            Files.createDirectories(journalFile.getParent());
+        }
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (channel.size() == 0L) {
+                writeHeader(channel, epoch);
+            }
+            DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            stream.write(records);
+            stream.flush();
+            channel.force(false);
+        }
+    }
+
+    static void reset(Path journalFile, long epoch) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(channel, epoch);
+            channel.force(false);
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, long epoch) throws IOException {
+        DataOutputStream stream = new DataOutputStream(Channels.newOutputStream(channel));
+        stream.writeInt(JOURNAL_VERSION);
+        stream.writeLong(epoch);
+        stream.flush();
+    }
+
+    /**
+     * Cuts the journal back to its first validLength bytes, dropping a damaged tail found by replay so that new
+     * records aren't appended behind it.
+     */
+    static void truncate(Path journalFile, long validLength) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(validLength);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Applies the journal on top of the nodes loaded from the snapshot.
+     * A record cut short by a crash, or one that can't be read (unknown type, out of range value, such as the zero
+     * filled tail a crash can leave), ends the replay; everything before it is kept.
+     * @return the number of records applied (-1 if the journal belongs to another snapshot), whether nodes were
+     * added or removed, which makes the topology stored in the snapshot stale, and how many leading bytes of the
+     * file are intact (less than its size if the replay stopped early)
+     */
+    public static ReplayResult replay(Path journalFile, long epoch, LongHashMap<NetworkSnapshot.NodeRecord> nodes) throws IOException {
+        if (!Files.exists(journalFile)) return new ReplayResult(0, false, 0L, 0L);
+        byte[] bytes = Files.readAllBytes(journalFile);
+        ByteArrayInputStream raw = new ByteArrayInputStream(bytes);
+        int applied = 0;
+        boolean topologyChanged = false;
+        long validLength = 0L;
+        try (DataInputStream in = new DataInputStream(raw)) {
+            int version = in.readInt();
+            if (version > JOURNAL_VERSION) {
+                System.out.println("Journal version " + version + " is newer than supported, skipping it");
+                return new ReplayResult(0, false, bytes.length, bytes.length);
+            }
+            if (in.readLong() != epoch) {
+                return new ReplayResult(-1, false, bytes.length, bytes.length);
+            }
+            validLength = bytes.length - raw.available();
+            while (true) {
+                int type = in.read();
+                if (type < 0) break;
+                switch (type) {
+                    case NODE_PLACED -> {
+                        int ordinal = in.readByte();
+                        NodeHolder.NodeType[] nodeTypes = NodeHolder.NodeType.values();
+                        if (ordinal < 0 || ordinal >= nodeTypes.length) throw new CorruptRecordException("node type " + ordinal);
+                        NodeHolder.NodeType nodeType = nodeTypes[ordinal];
+                        BlockPos position = BlockPos.fromLong(in.readLong());
+                        boolean controller = nodeType == NodeHolder.NodeType.CONTROLLERNODE;
+                        Map<BlockPos, ArrayList<OutputData>> controllerData = controller ? new LinkedHashMap<>() : Collections.emptyMap();
+                        Map<BlockPos, CableNode.DistributionStrategy> inputStrategies = controller ? new LinkedHashMap<>() : Collections.emptyMap();
+                        nodes.put(position.asLong(), new NetworkSnapshot.NodeRecord(nodeType, position, controllerData, inputStrategies, 0, -1));
+                        topologyChanged = true;
+                    }
+                    case NODE_REMOVED -> {
+                        nodes.remove(in.readLong());
+                        topologyChanged = true;
+                    }
+                    case ROUTE_SET -> {
+                        NetworkSnapshot.NodeRecord controller = nodes.get(in.readLong());
+                        BlockPos input = BlockPos.fromLong(in.readLong());
+                        OutputData output = OutputData.readFromDataStream(in);
+                        if (controller != null && controller.type() == NodeHolder.NodeType.CONTROLLERNODE) {
+                            ArrayList<OutputData> outputs = controller.controllerData().computeIfAbsent(input, k -> new ArrayList<>());
+                            outputs.removeIf(o -> o.outputPos.equals(output.outputPos));
+                            outputs.add(output);
+                        }
+                    }
+                    case ROUTE_REMOVED -> {
+                        NetworkSnapshot.NodeRecord controller = nodes.get(in.readLong());
+                        BlockPos input = BlockPos.fromLong(in.readLong());
+                        BlockPos output = BlockPos.fromLong(in.readLong());
+                        if (controller != null && controller.type() == NodeHolder.NodeType.CONTROLLERNODE) {
+                            ArrayList<OutputData> outputs = controller.controllerData().get(input);
+                            if (outputs != null) {
+                                outputs.removeIf(o -> o.outputPos.equals(output));
+                                if (outputs.isEmpty()) {
+                                    controller.controllerData().remove(input);
+                                    controller.inputStrategies().remove(input);
+                                }
+                            }
+                        }
+                    }
+                    case INVENTORY_UNLINKED -> {
+                        NetworkSnapshot.NodeRecord controller = nodes.get(in.readLong());
+                        BlockPos inventory = BlockPos.fromLong(in.readLong());
+                        if (controller != null && controller.type() == NodeHolder.NodeType.CONTROLLERNODE) {
+                            controller.controllerData().remove(inventory);
+                            controller.inputStrategies().remove(inventory);
+                            controller.controllerData().values().removeIf(outputs -> {
+                                outputs.removeIf(o -> o.outputPos.equals(inventory));
+                                return outputs.isEmpty();
+                            });
+                        }
+                    }
+                    case ROUTE_INTERVAL -> {
+                        NetworkSnapshot.NodeRecord controller = nodes.get(in.readLong());
+                        BlockPos input = BlockPos.fromLong(in.readLong());
+                        BlockPos output = BlockPos.fromLong(in.readLong());
+                        int intervalMs = in.readInt();
+                        OutputData route = NetworkSnapshot.findRoute(controller, input, output);
+                        if (route != null) route.intervalMs = intervalMs;
+                    }
+                    case INPUT_STRATEGY -> {
+                        NetworkSnapshot.NodeRecord controller = nodes.get(in.readLong());
+                        BlockPos input = BlockPos.fromLong(in.readLong());
+                        int strategy = in.readByte();
+                        CableNode.DistributionStrategy[] strategies = CableNode.DistributionStrategy.values();
+                        if (controller != null && controller.type() == NodeHolder.NodeType.CONTROLLERNODE && strategy >= 0 && strategy < strategies.length) {
+                            if (strategies[strategy] == CableNode.DistributionStrategy.FILL_FIRST) {
+                                controller.inputStrategies().remove(input);
+                            } else {
+                                controller.inputStrategies().put(input, strategies[strategy]);
+                            }
+                        }
+                    }
+                    default -> throw new CorruptRecordException("record type " + type);
+                }
+                ++applied;
+                validLength = bytes.length - raw.available();
+            }
+        } catch (EOFException e) {
+            System.out.println("Journal ends with an incomplete record, ignoring it");
+        } catch (CorruptRecordException | UTFDataFormatException e) {
+            System.out.println("Journal has an unreadable record (" + e.getMessage() + ") after " + applied + " records, ignoring the rest of it");
+        }
+        return new ReplayResult(applied, topologyChanged, validLength, bytes.length);
+    }
+
+    public static record ReplayResult(int records, boolean topologyChanged, long validLength, long fileLength) {
+        public boolean isDamaged() {
+            return this.validLength < this.fileLength;
+        }
+    }
+
+    private static final class CorruptRecordException extends IOException {
+        CorruptRecordException(String message) {
+            super(message);
+        }
+    }
+}
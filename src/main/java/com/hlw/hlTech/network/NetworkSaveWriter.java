@@ -0,0 +1,112 @@
+package com.hlw.hlTech.network;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes a world's snapshots on the save executor.
+ * Double buffered: one snapshot may be in the middle of being written while the next one waits in pending;
+ * a newer snapshot simply replaces a pending one that hasn't been picked up yet.
+ * Each write goes to a temp file which is then atomically moved over the save file.
+ * Journal batches are tagged with the snapshot generation they follow; a batch whose snapshot was coalesced into
+ * a newer one is already contained in that snapshot and is dropped instead of being appended after it.
+ */
+public class NetworkSaveWriter {
+    private final Path saveFile;
+    private final Path journalFile;
+    private final Executor executor;
+    private final AtomicReference<PendingSnapshot> pending = new AtomicReference<>();
+    private volatile boolean failed = false;
+    private long submittedGeneration = 0L;
+    private volatile long writtenGeneration = 0L;
+    private volatile long epoch = 0L;
+
+    public NetworkSaveWriter(Path saveFile, Path journalFile, Executor executor) {
+        this.saveFile = saveFile;
+        this.journalFile = journalFile;
+        this.executor = executor;
+    }
+
+    /**
+     * Epoch of the snapshot that was loaded, so appended records keep applying to it.
+     */
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public void submit(NetworkSnapshot snapshot) {
+        if (this.pending.getAndSet(new PendingSnapshot(snapshot, ++this.submittedGeneration)) == null) {
+            this.executor.execute(this::drain);
+        }
+    }
+
+    public void appendJournal(byte[] records) {
+        long generation = this.submittedGeneration;
+        this.executor.execute(() -> {
+            if (generation != this.writtenGeneration) return;
+            try {
+                NetworkJournal.append(this.journalFile, records, this.epoch);
+            } catch (IOException e) {
+                this.failed = true;
+                System.out.println("Failed to append to node network journal: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * True once after a write failed, so the owner can mark itself dirty again.
+     */
+    public boolean consumeFailure() {
+        if (!this.failed) return false;
+        this.failed = false;
+        return true;
+    }
+
+    private void drain() {
+        PendingSnapshot next = this.pending.getAndSet(null);
+        if (next == null) return;
+        long newEpoch = ThreadLocalRandom.current().nextLong();
+        try {
+            write(this.saveFile, next.snapshot(), newEpoch);
+            this.epoch = newEpoch;
+            this.writtenGeneration = next.generation();
+            NetworkJournal.reset(this.journalFile, newEpoch);
+            System.out.println("Saved " + next.snapshot().size() + " nodes");
+        } catch (IOException e) {
+            this.failed = true;
+            System.out.println("Failed to save node networks: " + e.getMessage());
+        }
+    }
+
+    static void write(Path saveFile, NetworkSnapshot snapshot, long epoch) throws IOException {
+        if (saveFile.getParent() != null) {
+            Files.createDirectories(saveFile.getParent());
+        }
+        Path tempFile = saveFile.resolveSibling(saveFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            snapshot.writeTo(out, epoch);
+            out.flush();
+            channel.force(true);
+        }
+        try {
+            Files.move(tempFile, saveFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, saveFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static record PendingSnapshot(NetworkSnapshot snapshot, long generation) {
+    }
+}
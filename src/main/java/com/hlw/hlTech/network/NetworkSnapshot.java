@@ -0,0 +1,488 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.Direction;
+import com.hlw.hlTech.util.LongHashMap;
+import com.hypixel.hytale.math.util.ChunkUtil;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable copy of a world's nodes and controller settings, taken under the world lock
+ * so that serialization can happen on the save thread.
+ *
+ * Version 2 file layout:
+ * magic, version, epoch, section count, then a directory of (section id, offset, length) entries.
+ * Sections: a string table for filter item ids, the nodes as fixed-width (packed position, type) records
+ * grouped per chunk, the controller routes, and the topology (connection mask and network index of every node, in
+ * node section order) so loading doesn't have to rediscover it. Readers skip sections they don't know.
+ * Version 1 files (a plain node list) are still read.
+ */
+public final class NetworkSnapshot {
+    public static final int FORMAT_VERSION = 2;
+    public static final int MAGIC = 0x484C544E;
+
+    static final int SECTION_STRINGS = 1;
+    static final int SECTION_NODES = 2;
+    static final int SECTION_CONTROLLERS = 3;
+    static final int SECTION_TOPOLOGY = 4;
+    static final int SECTION_ROUTE_INTERVALS = 5;
+    static final int SECTION_INPUT_STRATEGIES = 6;
+
+    private static final int HEADER_SIZE = 20;
+    private static final int DIRECTORY_ENTRY_SIZE = 20;
+
+    private final List<NodeRecord> nodes;
+
+    private NetworkSnapshot(List<NodeRecord> nodes) {
+        this.nodes = nodes;
+    }
+
+    public static NetworkSnapshot capture(LongHashMap<NodeHolder> worldNodes) {
+        List<NodeRecord> records = new ArrayList<>(worldNodes.size());
+        Map<CableNetwork, Integer> networkIds = new IdentityHashMap<>();
+        for (NodeHolder node : worldNodes.values()) {
+            Map<BlockPos, ArrayList<OutputData>> controllerData = Collections.emptyMap();
+            Map<BlockPos, CableNode.DistributionStrategy> inputStrategies = Collections.emptyMap();
+            if (node.type == NodeHolder.NodeType.CONTROLLERNODE) {
+                inputStrategies = new LinkedHashMap<>(node.controllerNode.getInputStrategies());
+                controllerData = new LinkedHashMap<>();
+                for (var entry : node.controllerNode.InputsAndOutputs.entrySet()) {
+                    ArrayList<OutputData> outputs = new ArrayList<>(entry.getValue().size());
+                    for (OutputData output : entry.getValue()) {
+                        outputs.add(output.copy());
+                    }
+                    controllerData.put(entry.getKey(), outputs);
+                }
+            }
+            int connectionMask = 0;
+            long key = node.getPosition().asLong();
+            for (Direction dir : node.getConnections()) {
+                if (worldNodes.containsKey(BlockPos.offset(key, dir))) {
+                    connectionMask |= 1 << dir.ordinal();
+                }
+            }
+            int networkId = node.getNetwork() == null ? -1 : networkIds.computeIfAbsent(node.getNetwork(), k -> networkIds.size());
+            records.add(new NodeRecord(node.type, node.getPosition(), controllerData, inputStrategies, connectionMask, networkId));
+        }
+        return new NetworkSnapshot(Collections.unmodifiableList(records));
+    }
+
+    public int size() {
+        return this.nodes.size();
+    }
+
+    public List<NodeRecord> getNodes() {
+        return this.nodes;
+    }
+
+    public void writeTo(DataOutputStream out, long epoch) throws IOException {
+        Map<Long, List<NodeRecord>> byChunk = new LinkedHashMap<>();
+        for (NodeRecord node : this.nodes) {
+            long chunkId = ChunkUtil.indexChunkFromBlock(node.position().getX(), node.position().getZ());
+            byChunk.computeIfAbsent(chunkId, k -> new ArrayList<>()).add(node);
+        }
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        byte[] nodeSection = this.writeNodeSection(byChunk);
+        byte[] controllerSection = this.writeControllerSection(strings);
+        List<Section> sections = new ArrayList<>(List.of(
+                new Section(SECTION_STRINGS, writeStringSection(strings)),
+                new Section(SECTION_NODES, nodeSection),
+                new Section(SECTION_CONTROLLERS, controllerSection)));
+        byte[] topologySection = this.writeTopologySection(byChunk);
+        if (topologySection != null) {
+            sections.add(new Section(SECTION_TOPOLOGY, topologySection));
+        }
+        byte[] intervalSection = this.writeRouteIntervalSection();
+        if (intervalSection != null) {
+            sections.add(new Section(SECTION_ROUTE_INTERVALS, intervalSection));
+        }
+        byte[] strategySection = this.writeInputStrategySection();
+        if (strategySection != null) {
+            sections.add(new Section(SECTION_INPUT_STRATEGIES, strategySection));
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(epoch);
+        out.writeInt(sections.size());
+        long offset = HEADER_SIZE + (long) sections.size() * DIRECTORY_ENTRY_SIZE;
+        for (Section section : sections) {
+            out.writeInt(section.id());
+            out.writeLong(offset);
+            out.writeLong(section.data().length);
+            offset += section.data().length;
+        }
+        for (Section section : sections) {
+            out.write(section.data());
+        }
+    }
+
+    private byte[] writeNodeSection(Map<Long, List<NodeRecord>> byChunk) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + byChunk.size() * 12 + this.nodes.size() * 9);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(this.nodes.size());
+        out.writeInt(byChunk.size());
+        for (var chunk : byChunk.entrySet()) {
+            out.writeLong(chunk.getKey());
+            out.writeInt(chunk.getValue().size());
+            for (NodeRecord node : chunk.getValue()) {
+                out.writeLong(node.position().asLong());
+                out.writeByte(node.type().ordinal());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * One (connection mask, network index) pair per node, in node section order.
+     * Left out if some node has no network, which the reader treats as "recompute".
+     */
+    private byte[] writeTopologySection(Map<Long, List<NodeRecord>> byChunk) throws IOException {
+        int networkCount = 0;
+        for (NodeRecord node : this.nodes) {
+            if (node.networkId() < 0) return null;
+            networkCount = Math.max(networkCount, node.networkId() + 1);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + this.nodes.size() * 5);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(networkCount);
+        for (List<NodeRecord> chunk : byChunk.values()) {
+            for (NodeRecord node : chunk) {
+                out.writeByte(node.connectionMask());
+                out.writeInt(node.networkId());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private byte[] writeControllerSection(Map<String, Integer> strings) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int controllerCount = 0;
+        for (NodeRecord node : this.nodes) {
+            if (node.type() == NodeHolder.NodeType.CONTROLLERNODE) ++controllerCount;
+        }
+        out.writeInt(controllerCount);
+        for (NodeRecord node : this.nodes) {
+            if (node.type() != NodeHolder.NodeType.CONTROLLERNODE) continue;
+            out.writeLong(node.position().asLong());
+            out.writeInt(node.controllerData().size());
+            for (var input : node.controllerData().entrySet()) {
+                out.writeLong(input.getKey().asLong());
+                out.writeInt(input.getValue().size());
+                for (OutputData output : input.getValue()) {
+                    out.writeLong(output.outputPos.asLong());
+                    out.writeInt(output.priority);
+                    out.writeBoolean(output.allowAll);
+                    out.writeInt(output.itemIds.size());
+                    for (String id : output.itemIds) {
+                        out.writeInt(strings.computeIfAbsent(id, k -> strings.size()));
+                    }
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Routes with their own transfer interval, or null if every route uses the world's interval.
+     */
+    private byte[] writeRouteIntervalSection() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int count = 0;
+        for (NodeRecord node : this.nodes) {
+            if (node.type() != NodeHolder.NodeType.CONTROLLERNODE) continue;
+            for (var input : node.controllerData().entrySet()) {
+                for (OutputData output : input.getValue()) {
+                    if (output.intervalMs <= 0) continue;
+                    out.writeLong(node.position().asLong());
+                    out.writeLong(input.getKey().asLong());
+                    out.writeLong(output.outputPos.asLong());
+                    out.writeInt(output.intervalMs);
+                    ++count;
+                }
+            }
+        }
+        if (count == 0) return null;
+        out.flush();
+        byte[] entries = bytes.toByteArray();
+        ByteArrayOutputStream section = new ByteArrayOutputStream(entries.length + 4);
+        new DataOutputStream(section).writeInt(count);
+        section.write(entries);
+        return section.toByteArray();
+    }
+
+    /**
+     * Inputs that don't use the default FILL_FIRST strategy, or null if there are none.
+     */
+    private byte[] writeInputStrategySection() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int count = 0;
+        for (NodeRecord node : this.nodes) {
+            for (var input : node.inputStrategies().entrySet()) {
+                out.writeLong(node.position().asLong());
+                out.writeLong(input.getKey().asLong());
+                out.writeByte(input.getValue().ordinal());
+                ++count;
+            }
+        }
+        if (count == 0) return null;
+        out.flush();
+        byte[] entries = bytes.toByteArray();
+        ByteArrayOutputStream section = new ByteArrayOutputStream(entries.length + 4);
+        new DataOutputStream(section).writeInt(count);
+        section.write(entries);
+        return section.toByteArray();
+    }
+
+    private static byte[] writeStringSection(Map<String, Integer> strings) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(strings.size());
+        for (String value : strings.keySet()) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a save file of either version.
+     * The file is read into a heap buffer in one go rather than mapped: a mapping stays alive until it is garbage
+     * collected, and on Windows the save writer can't replace the file while it is.
+     */
+    public static Contents read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Save file is too large: " + size);
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) throw new EOFException("Save file shrank while being read");
+            }
+            buffer.flip();
+        }
+
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.limit()))) {
+                return readV1(in);
+            }
+        }
+        try {
+            return readV2(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Save file is truncated or corrupt", e);
+        }
+    }
+
+    private static Contents readV2(ByteBuffer buffer) throws IOException {
+        int version = buffer.getInt(4);
+        if (version > FORMAT_VERSION) {
+            throw new IOException("Save file version " + version + " is newer than supported (" + FORMAT_VERSION + ")");
+        }
+        long epoch = buffer.getLong(8);
+        int sectionCount = buffer.getInt(16);
+
+        Map<Integer, ByteBuffer> sections = new HashMap<>();
+        for (int i = 0; i < sectionCount; ++i) {
+            int entry = HEADER_SIZE + i * DIRECTORY_ENTRY_SIZE;
+            int id = buffer.getInt(entry);
+            long offset = buffer.getLong(entry + 4);
+            long length = buffer.getLong(entry + 12);
+            if (offset < 0L || length < 0L || offset + length > buffer.limit()) {
+                throw new IOException("Section " + id + " is out of bounds");
+            }
+            sections.put(id, buffer.slice((int) offset, (int) length));
+        }
+
+        ByteBuffer nodeSection = sections.get(SECTION_NODES);
+        if (nodeSection == null) {
+            throw new IOException("Save file has no node section");
+        }
+        ByteBuffer topologySection = sections.get(SECTION_TOPOLOGY);
+        if (topologySection != null) {
+            topologySection.getInt();
+        }
+        int nodeCount = nodeSection.getInt();
+        int chunkCount = nodeSection.getInt();
+        NodeHolder.NodeType[] types = NodeHolder.NodeType.values();
+        LongHashMap<NodeRecord> loadedNodes = new LongHashMap<>(nodeCount);
+        for (int c = 0; c < chunkCount; ++c) {
+            nodeSection.getLong();
+            int count = nodeSection.getInt();
+            for (int i = 0; i < count; ++i) {
+                long packed = nodeSection.getLong();
+                int type = nodeSection.get();
+                int connectionMask = 0;
+                int networkId = -1;
+                if (topologySection != null) {
+                    connectionMask = topologySection.get();
+                    networkId = topologySection.getInt();
+                }
+                if (type < 0 || type >= types.length) {
+                    System.out.println("Skipping invalid node " + BlockPos.fromLong(packed));
+                    continue;
+                }
+                boolean controller = types[type] == NodeHolder.NodeType.CONTROLLERNODE;
+                Map<BlockPos, ArrayList<OutputData>> controllerData = controller ? new LinkedHashMap<>() : Collections.emptyMap();
+                Map<BlockPos, CableNode.DistributionStrategy> inputStrategies = controller ? new LinkedHashMap<>() : Collections.emptyMap();
+                loadedNodes.put(packed, new NodeRecord(types[type], BlockPos.fromLong(packed), controllerData, inputStrategies, connectionMask, networkId));
+            }
+        }
+
+        ByteBuffer controllerSection = sections.get(SECTION_CONTROLLERS);
+        if (controllerSection != null) {
+            String[] strings = readStringSection(sections.get(SECTION_STRINGS));
+            int controllerCount = controllerSection.getInt();
+            for (int c = 0; c < controllerCount; ++c) {
+                NodeRecord controller = loadedNodes.get(controllerSection.getLong());
+                int inputCount = controllerSection.getInt();
+                for (int i = 0; i < inputCount; ++i) {
+                    BlockPos input = BlockPos.fromLong(controllerSection.getLong());
+                    int outputCount = controllerSection.getInt();
+                    ArrayList<OutputData> outputs = new ArrayList<>(outputCount);
+                    for (int o = 0; o < outputCount; ++o) {
+                        BlockPos outputPos = BlockPos.fromLong(controllerSection.getLong());
+                        int priority = controllerSection.getInt();
+                        boolean allowAll = controllerSection.get() != 0;
+                        int idCount = controllerSection.getInt();
+                        ArrayList<String> itemIds = new ArrayList<>(idCount);
+                        for (int k = 0; k < idCount; ++k) {
+                            itemIds.add(strings[controllerSection.getInt()]);
+                        }
+                        outputs.add(new OutputData(outputPos, priority, allowAll, itemIds));
+                    }
+                    if (controller != null && controller.type() == NodeHolder.NodeType.CONTROLLERNODE) {
+                        controller.controllerData().put(input, outputs);
+                    }
+                }
+            }
+        }
+
+        ByteBuffer intervalSection = sections.get(SECTION_ROUTE_INTERVALS);
+        if (intervalSection != null) {
+            int count = intervalSection.getInt();
+            for (int i = 0; i < count; ++i) {
+                NodeRecord controller = loadedNodes.get(intervalSection.getLong());
+                BlockPos input = BlockPos.fromLong(intervalSection.getLong());
+                BlockPos output = BlockPos.fromLong(intervalSection.getLong());
+                int intervalMs = intervalSection.getInt();
+                OutputData route = findRoute(controller, input, output);
+                if (route != null) route.intervalMs = intervalMs;
+            }
+        }
+
+        ByteBuffer strategySection = sections.get(SECTION_INPUT_STRATEGIES);
+        if (strategySection != null) {
+            CableNode.DistributionStrategy[] strategies = CableNode.DistributionStrategy.values();
+            int count = strategySection.getInt();
+            for (int i = 0; i < count; ++i) {
+                NodeRecord controller = loadedNodes.get(strategySection.getLong());
+                BlockPos input = BlockPos.fromLong(strategySection.getLong());
+                int strategy = strategySection.get();
+                if (controller != null && controller.type() == NodeHolder.NodeType.CONTROLLERNODE && strategy >= 0 && strategy < strategies.length) {
+                    controller.inputStrategies().put(input, strategies[strategy]);
+                }
+            }
+        }
+        return new Contents(loadedNodes, epoch);
+    }
+
+    static OutputData findRoute(NodeRecord controller, BlockPos input, BlockPos output) {
+        if (controller == null || controller.type() != NodeHolder.NodeType.CONTROLLERNODE) return null;
+        ArrayList<OutputData> outputs = controller.controllerData().get(input);
+        if (outputs == null) return null;
+        for (OutputData route : outputs) {
+            if (route.outputPos.equals(output)) return route;
+        }
+        return null;
+    }
+
+    private static String[] readStringSection(ByteBuffer section) {
+        if (section == null) return new String[0];
+        String[] strings = new String[section.getInt()];
+        for (int i = 0; i < strings.length; ++i) {
+            byte[] encoded = new byte[section.getInt()];
+            section.get(encoded);
+            strings[i] = new String(encoded, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    /**
+     * Version 1: a plain list of nodes, optionally followed by the epoch.
+     */
+    private static Contents readV1(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != 1) {
+            throw new IOException("Unknown save file version " + version);
+        }
+
+        int nodeCount = in.readInt();
+        if (nodeCount < 0 || nodeCount > 1000000) {
+            throw new IOException("Invalid node count: " + nodeCount);
+        }
+
+        LongHashMap<NodeRecord> loadedNodes = new LongHashMap<>(nodeCount);
+        for(int i = 0; i < nodeCount; ++i) {
+            try {
+                NodeHolder.NodeType ty = NodeHolder.NodeType.values()[in.readInt()];
+                BlockPos position = new BlockPos(in.readInt(), in.readInt(), in.readInt());
+                Map<BlockPos, ArrayList<OutputData>> IO = Collections.emptyMap();
+                if(ty == NodeHolder.NodeType.CONTROLLERNODE){
+                    int IOsize = in.readInt();
+                    IO = new LinkedHashMap<>();
+                    for(int j = 0; j<IOsize; j++){
+                        BlockPos inputPos = new BlockPos(in.readInt(),in.readInt(),in.readInt());
+                        int Osize = in.readInt();
+                        ArrayList<OutputData> positions = new ArrayList<>();
+                        for(int k = 0;k<Osize;k++){
+                            positions.add(OutputData.readFromDataStream(in));
+                        }
+                        IO.put(inputPos,positions);
+                    }
+                }
+                Map<BlockPos, CableNode.DistributionStrategy> strategies = ty == NodeHolder.NodeType.CONTROLLERNODE ? new LinkedHashMap<>() : Collections.emptyMap();
+                loadedNodes.put(position.asLong(), new NodeRecord(ty, position, IO, strategies, 0, -1));
+
+            } catch (IllegalArgumentException e) {
+                System.out.println("Skipping invalid node " + i);
+            }
+        }
+        long epoch = 0L;
+        try {
+            epoch = in.readLong();
+        } catch (EOFException e) {
+        }
+        return new Contents(loadedNodes, epoch);
+    }
+
+    public static record Contents(LongHashMap<NodeRecord> nodes, long epoch) {
+    }
+
+    /**
+     * connectionMask has one bit per Direction ordinal for connections to other nodes; networkId is -1 when unknown.
+     */
+    public static record NodeRecord(NodeHolder.NodeType type, BlockPos position, Map<BlockPos, ArrayList<OutputData>> controllerData, Map<BlockPos, CableNode.DistributionStrategy> inputStrategies, int connectionMask, int networkId) {
+    }
+
+    private static record Section(int id, byte[] data) {
+    }
+}
@@ -64,12 +64,19 @@ public class NodeHolder {
     }
 
 
+    /**
+     * The root of the network this node was added to; the node is repointed at it so the next lookup is direct.
+     */
     public CableNetwork getNetwork() {
-
-        if(type == NodeType.CABLENODE )return this.cableNode.getNetwork();
-        else if (type == NodeType.CONTROLLERNODE) return this.controllerNode.getNetwork();
+        CableNetwork network;
+        if(type == NodeType.CABLENODE ) network = this.cableNode.getNetwork();
+        else if (type == NodeType.CONTROLLERNODE) network = this.controllerNode.getNetwork();
         else throw new UnsupportedOperationException("NodeType isn't cablenode nor controllernode !");
 
+        if (network == null) return null;
+        CableNetwork root = network.find();
+        if (root != network) this.setNetwork(root);
+        return root;
     }
 
     public BlockPos getPosition() {
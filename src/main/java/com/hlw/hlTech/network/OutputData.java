@@ -13,6 +13,56 @@ public class OutputData {
      public int priority;
      public boolean allowAll;
      public ArrayList<String> itemIds = new ArrayList<>();
+     public int intervalMs = 0;
+     long nextTransferMs = 0L;
+     long idleSourceVersion = -1L;
+     long idleDestVersion = -1L;
+     long idleSinceMs = 0L;
+     int blockedCount = 0;
+     long blockedUntilMs = 0L;
+     long blockedDestVersion = -1L;
+     private ItemFilter compiledFilter;
+     private ArrayList<String> compiledFrom;
+     private int compiledSize = -1;
+
+     /**
+      * Clears the idle state so the route is tried again on the next pass.
+      */
+     void wake(){
+         this.idleSourceVersion = -1L;
+         this.idleDestVersion = -1L;
+         this.blockedCount = 0;
+     }
+
+     /**
+      * Whether this route lets itemId through. itemIds may hold exact ids, globs and #tags (see ItemFilter); it stays
+      * the saved, ordered form and is compiled again when the list is replaced or changes size.
+      */
+     public boolean accepts(String itemId){
+         return this.allowAll != this.filter().matches(itemId);
+     }
+
+     public boolean addItemId(String itemId){
+         if (this.itemIds.contains(itemId)) return false;
+         this.itemIds.add(itemId);
+         this.compiledFilter = null;
+         return true;
+     }
+
+     public boolean removeItemId(String itemId){
+         if (!this.itemIds.remove(itemId)) return false;
+         this.compiledFilter = null;
+         return true;
+     }
+
+     private ItemFilter filter(){
+         if (this.compiledFilter == null || this.compiledFrom != this.itemIds || this.compiledSize != this.itemIds.size()) {
+             this.compiledFilter = ItemFilter.compile(this.itemIds);
+             this.compiledFrom = this.itemIds;
+             this.compiledSize = this.itemIds.size();
+         }
+         return this.compiledFilter;
+     }
 
      public void writeToDataStream (DataOutputStream stream) throws IOException {
          outputPos.writeToDataStream(stream);
@@ -26,12 +76,19 @@ public class OutputData {
 
      public OutputData(){
 
+     }
+     public OutputData copy(){
+         OutputData copy = new OutputData(this.outputPos, this.priority, this.allowAll, new ArrayList<>(this.itemIds));
+         copy.intervalMs = this.intervalMs;
+         return copy;
      }
      public void replaceData (OutputData other){
          this.outputPos = other.outputPos;
          this.priority = other.priority;
          this.allowAll = other.allowAll;
          this.itemIds = other.itemIds;
+         this.intervalMs = other.intervalMs;
+         this.wake();
      }
 
      public OutputData(BlockPos outputPos,int priority,boolean allowAll, ArrayList<String> itemIds){
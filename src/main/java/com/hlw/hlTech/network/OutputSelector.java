@@ -0,0 +1,135 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decides in which order the outputs of one controller input are offered items, within each priority.
+ * order is applied when the input's output order is rebuilt (ControllerNode.getOrderedOutputs, after route or, for
+ * distance orders, topology changes), so static orders cost nothing per pass; arrange adjusts a dispatch right before
+ * it runs, for orders that depend on state (round robin position, destination fill).
+ */
+public interface OutputSelector {
+
+    /**
+     * Order of outputs with equal priority, or null to keep the configured order.
+     * @param distances hop distances of the input's network; only given when usesDistances is true
+     */
+    default Comparator<OutputData> order(BlockPos input, NetworkDistances distances) {
+        return null;
+    }
+
+    /**
+     * True if order depends on the network's layout, so the cached order must be rebuilt on topology changes.
+     */
+    default boolean usesDistances() {
+        return false;
+    }
+
+    /**
+     * Reorders a dispatch's targets in place; they arrive sorted by priority and must stay that way.
+     */
+    default void arrange(TransferEngine.Dispatch dispatch, ContainerCache containers) {
+    }
+
+    OutputSelector FILL_FIRST = new OutputSelector() {
+    };
+
+    /**
+     * Fewest cable hops first; outputs the input can't reach go last.
+     */
+    OutputSelector NEAREST = new OutputSelector() {
+        @Override
+        public Comparator<OutputData> order(BlockPos input, NetworkDistances distances) {
+            return Comparator.comparingLong(o -> hops(distances, input, o.outputPos, false));
+        }
+
+        @Override
+        public boolean usesDistances() {
+            return true;
+        }
+    };
+
+    /**
+     * Most cable hops first; outputs the input can't reach go last.
+     */
+    OutputSelector FARTHEST = new OutputSelector() {
+        @Override
+        public Comparator<OutputData> order(BlockPos input, NetworkDistances distances) {
+            return Comparator.comparingLong(o -> hops(distances, input, o.outputPos, true));
+        }
+
+        @Override
+        public boolean usesDistances() {
+            return true;
+        }
+    };
+
+    /**
+     * Rotates each priority group by one every time the input moved something.
+     */
+    OutputSelector ROUND_ROBIN = new OutputSelector() {
+        @Override
+        public void arrange(TransferEngine.Dispatch dispatch, ContainerCache containers) {
+            int index = dispatch.network.getRoundRobinIndex(dispatch.input);
+            if (index == 0) return;
+            forEachPriorityGroup(dispatch.targets, group -> Collections.rotate(group, -(index % group.size())));
+        }
+    };
+
+    /**
+     * Least filled destination first, so a wall of identical chests fills evenly.
+     */
+    OutputSelector BALANCED = new OutputSelector() {
+        @Override
+        public void arrange(TransferEngine.Dispatch dispatch, ContainerCache containers) {
+            forEachPriorityGroup(dispatch.targets, group -> {
+                if (group.size() < 2) return;
+                for (TransferEngine.Target target : group) target.fill = containers.getFillLevel(target.dest);
+                group.sort(Comparator.comparingDouble(t -> t.fill));
+            });
+        }
+    };
+
+    static OutputSelector of(CableNode.DistributionStrategy strategy) {
+        if (strategy == null) return FILL_FIRST;
+        return switch (strategy) {
+            case ROUND_ROBIN -> ROUND_ROBIN;
+            case NEAREST -> NEAREST;
+            case FARTHEST -> FARTHEST;
+            case BALANCED -> BALANCED;
+            case FILL_FIRST -> FILL_FIRST;
+        };
+    }
+
+    static void forEachPriorityGroup(List<TransferEngine.Target> targets, Consumer<List<TransferEngine.Target>> action) {
+        int start = 0;
+        while (start < targets.size()) {
+            int priority = targets.get(start).output.priority;
+            int end = start + 1;
+            while (end < targets.size() && targets.get(end).output.priority == priority) ++end;
+            action.accept(targets.subList(start, end));
+            start = end;
+        }
+    }
+
+    /**
+     * Sort key for distance orders; falls back to straight-line distance when there is no table.
+     */
+    static long hops(NetworkDistances distances, BlockPos input, BlockPos output, boolean farthestFirst) {
+        long hops = distances != null ? distances.distance(input, output) : distanceSq(input, output);
+        if (hops < 0) return Long.MAX_VALUE;
+        return farthestFirst ? -hops : hops;
+    }
+
+    static long distanceSq(BlockPos a, BlockPos b) {
+        long dx = a.getX() - b.getX();
+        long dy = a.getY() - b.getY();
+        long dz = a.getZ() - b.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
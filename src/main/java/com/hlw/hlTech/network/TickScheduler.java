@@ -0,0 +1,85 @@
+package com.hlw.hlTech.network;
+
+import java.util.ArrayList;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs a world's periodic jobs, each on its own interval.
+ * Intervals are read from their supplier every tick, so config changes apply without a restart.
+ * At most one maintenance job (retries, chunk rechecks, saving) runs per tick; when several are due on the same tick
+ * the others wait for the next ones, which keeps them from piling onto the same update.
+ * Maintenance jobs are visited round-robin so a short interval can't starve a long one.
+ */
+public class TickScheduler {
+    private final ArrayList<Job> jobs = new ArrayList<>();
+    private int nextMaintenance = 0;
+
+    /**
+     * @param action receives the seconds since the job last ran
+     */
+    public void add(String name, LongSupplier intervalMs, boolean maintenance, DoubleConsumer action) {
+        this.jobs.add(new Job(name, intervalMs, maintenance, action));
+    }
+
+    /**
+     * Advances every job's clock.
+     * @return true if at least one job is due, so the caller only takes the world lock when there is work
+     */
+    public boolean advance(double deltaSeconds) {
+        boolean due = false;
+        for (Job job : this.jobs) {
+            job.elapsed += deltaSeconds;
+            due |= job.isDue();
+        }
+        return due;
+    }
+
+    /**
+     * Runs the due jobs: every due regular job, and the first due maintenance job in round-robin order.
+     */
+    public void runDue() {
+        int count = this.jobs.size();
+        for (Job job : this.jobs) {
+            if (!job.maintenance && job.isDue()) job.run();
+        }
+        for (int i = 0; i < count; i++) {
+            int index = (this.nextMaintenance + i) % count;
+            Job job = this.jobs.get(index);
+            if (job.maintenance && job.isDue()) {
+                job.run();
+                this.nextMaintenance = index + 1;
+                break;
+            }
+        }
+    }
+
+    private static class Job {
+        final String name;
+        final LongSupplier intervalMs;
+        final boolean maintenance;
+        final DoubleConsumer action;
+        double elapsed = 0d;
+
+        Job(String name, LongSupplier intervalMs, boolean maintenance, DoubleConsumer action) {
+            this.name = name;
+            this.intervalMs = intervalMs;
+            this.maintenance = maintenance;
+            this.action = action;
+        }
+
+        boolean isDue() {
+            return this.elapsed * 1000d >= Math.max(1L, this.intervalMs.getAsLong());
+        }
+
+        void run() {
+            double seconds = this.elapsed;
+            this.elapsed = 0d;
+            try {
+                this.action.accept(seconds);
+            } catch (RuntimeException e) {
+                System.out.println("Scheduled job " + this.name + " failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.CableConfig;
+import com.hlw.hlTech.util.BlockPos;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.CombinedItemContainer;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.inventory.transaction.ItemStackTransaction;
+
+import java.util.ArrayList;
+
+/**
+ * Moves items from one controller input to its outputs per call (a Dispatch).
+ * The source is scanned once; each stack goes to the first output, in dispatch order, whose filter accepts it, and
+ * whatever that output can't take (full, or out of budget) overflows to the next ones.
+ * Every output gets a budget of items for the pass and drains as many slots (and whole stacks) as that budget allows.
+ */
+public class TransferEngine {
+
+    private long totalMoved = 0L;
+    private long totalAttempted = 0L;
+    private int passMoved = 0;
+    private int passAttempted = 0;
+    private int passRoutes = 0;
+    private int lastPassMoved = 0;
+    private int lastPassAttempted = 0;
+    private int lastPassRoutes = 0;
+    private int passSlices = 0;
+    private int lastPassSlices = 0;
+    private int passIdle = 0;
+    private int lastPassIdle = 0;
+    private int passBackedOff = 0;
+    private int lastPassBackedOff = 0;
+
+    /**
+     * Items a single route may move during a pass that covers elapsedSeconds.
+     * itemsPerTransfer is expressed per transferIntervalMs, so a pass covering several intervals gets several times the items.
+     */
+    public static int computeRouteBudget(CableConfig config, double elapsedSeconds) {
+        long interval = Math.max(1L, config.transferIntervalMs);
+        double intervals = (elapsedSeconds * 1000d) / (double) interval;
+        long budget = Math.round(Math.max(1, config.itemsPerTransfer) * intervals);
+        return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, budget));
+    }
+
+    public void beginPass() {
+        this.passMoved = 0;
+        this.passAttempted = 0;
+        this.passRoutes = 0;
+        this.passSlices = 0;
+        this.passIdle = 0;
+        this.passBackedOff = 0;
+    }
+
+    /**
+     * Counts a route skipped because neither of its containers changed since it last moved nothing.
+     */
+    public void onRouteIdle() {
+        ++this.passIdle;
+    }
+
+    /**
+     * Counts a route skipped because it is backing off from a destination that refused everything.
+     */
+    public void onRouteBackedOff() {
+        ++this.passBackedOff;
+    }
+
+    /**
+     * Counts the ticks a pass was spread over when it ran out of its per-tick budget.
+     */
+    public void onSlice() {
+        ++this.passSlices;
+    }
+
+    public void endPass() {
+        this.lastPassMoved = this.passMoved;
+        this.lastPassAttempted = this.passAttempted;
+        this.lastPassRoutes = this.passRoutes;
+        this.lastPassSlices = this.passSlices;
+        this.lastPassIdle = this.passIdle;
+        this.lastPassBackedOff = this.passBackedOff;
+    }
+
+    /**
+     * Runs a dispatch directly, on the world thread.
+     * @return the number of items moved over all its targets
+     */
+    public int dispatch(Dispatch dispatch) {
+        this.passRoutes += dispatch.targets.size();
+        ItemContainer source = dispatch.source;
+        int transferred = 0;
+        short endSlot = source.getCapacity();
+        for(short slot = firstExtractableSlot(source); slot < endSlot && dispatch.hasBudget(); ++slot) {
+            ItemStack stack = source.getItemStack(slot);
+            if (stack == null || stack.isEmpty()) continue;
+            transferred += this.distribute(dispatch, slot, stack, stack.getQuantity());
+        }
+
+        this.passMoved += transferred;
+        this.totalMoved += transferred;
+        return transferred;
+    }
+
+    /**
+     * Offers up to count items of one slot to the targets in order, each taking what its filter, budget and
+     * destination allow.
+     */
+    private int distribute(Dispatch dispatch, short slot, ItemStack stack, int count) {
+        String itemId = stack.getItemId();
+        int moved = 0;
+        for (Target target : dispatch.targets) {
+            if (moved >= count) break;
+            int room = target.budget - target.moved;
+            if (room <= 0 || !accepts(target.output, itemId) || target.hasRefused(itemId)) continue;
+            if (moved > 0) {
+                stack = dispatch.source.getItemStack(slot);
+                if (stack == null || stack.isEmpty() || !itemId.equals(stack.getItemId())) break;
+            }
+            int added = this.moveFromSlot(dispatch.source, slot, stack, Math.min(count - moved, room), target.dest);
+            if (added == 0) {
+                target.refuse(itemId);
+            }
+            target.moved += added;
+            moved += added;
+        }
+        return moved;
+    }
+
+    static boolean accepts(OutputData outputdata, String itemId) {
+        return outputdata == null || outputdata.accepts(itemId);
+    }
+
+    /**
+     * Machines expose a CombinedItemContainer whose last container holds their output; only that part is extracted.
+     */
+    static short firstExtractableSlot(ItemContainer source) {
+        if (source instanceof CombinedItemContainer combined) {
+            if (combined.getContainersSize() > 1) {
+                ItemContainer outputContainer = combined.getContainer(combined.getContainersSize() - 1);
+                return (short)(source.getCapacity() - outputContainer.getCapacity());
+            }
+        }
+        return 0;
+    }
+
+    private int moveFromSlot(ItemContainer source, short slot, ItemStack stack, int countToTransfer, ItemContainer dest) {
+        ItemStack toTransfer = stack.withQuantity(countToTransfer);
+        if (toTransfer == null) return 0;
+
+        this.passAttempted += countToTransfer;
+        this.totalAttempted += countToTransfer;
+        ItemStackTransaction addResult = dest.addItemStack(toTransfer);
+        if (!addResult.succeeded()) return 0;
+
+        ItemStack remainder = addResult.getRemainder();
+        int actuallyAdded = countToTransfer;
+        if (remainder != null && !remainder.isEmpty()) {
+            actuallyAdded = countToTransfer - remainder.getQuantity();
+        }
+
+        if (actuallyAdded > 0) {
+            int remaining = stack.getQuantity() - actuallyAdded;
+            if (remaining <= 0) {
+                source.removeItemStackFromSlot(slot);
+            } else {
+                source.removeItemStackFromSlot(slot, actuallyAdded);
+            }
+            return actuallyAdded;
+        }
+        return 0;
+    }
+
+    public long getTotalMoved() {
+        return this.totalMoved;
+    }
+
+    public long getTotalAttempted() {
+        return this.totalAttempted;
+    }
+
+    public int getLastPassMoved() {
+        return this.lastPassMoved;
+    }
+
+    public int getLastPassAttempted() {
+        return this.lastPassAttempted;
+    }
+
+    public int getLastPassRoutes() {
+        return this.lastPassRoutes;
+    }
+
+    public int getLastPassSlices() {
+        return this.lastPassSlices;
+    }
+
+    public int getLastPassIdle() {
+        return this.lastPassIdle;
+    }
+
+    public int getLastPassBackedOff() {
+        return this.lastPassBackedOff;
+    }
+
+    public String getStats() {
+        return "Routes: " + this.lastPassRoutes + " over " + this.lastPassSlices + " ticks (parked: " + this.lastPassIdle + " idle, " + this.lastPassBackedOff + " backing off), Moved: " + this.lastPassMoved + "/" + this.lastPassAttempted + " attempted (total " + this.totalMoved + "/" + this.totalAttempted + ")";
+    }
+
+    /**
+     * One controller input and the outputs it feeds this pass, in the order they are offered items: highest priority
+     * first, then as the input's OutputSelector arranged them.
+     */
+    public static class Dispatch {
+        final NodeHolder controller;
+        final CableNetwork network;
+        final BlockPos input;
+        final ItemContainer source;
+        final ArrayList<Target> targets = new ArrayList<>();
+
+        public Dispatch(NodeHolder controller, CableNetwork network, BlockPos input, ItemContainer source) {
+            this.controller = controller;
+            this.network = network;
+            this.input = input;
+            this.source = source;
+        }
+
+        public void addTarget(OutputData output, ItemContainer dest, int budget) {
+            this.targets.add(new Target(output, dest, budget));
+        }
+
+        boolean hasBudget() {
+            for (Target target : this.targets) {
+                if (target.moved < target.budget) return true;
+            }
+            return false;
+        }
+    }
+
+    public static class Target {
+        final OutputData output;
+        final ItemContainer dest;
+        final int budget;
+        int moved = 0;
+        /**
+         * Fill level of dest, read once when the dispatch is arranged so sorting doesn't rescan it per comparison.
+         */
+        double fill;
+        private ArrayList<String> refused;
+
+        Target(OutputData output, ItemContainer dest, int budget) {
+            this.output = output;
+            this.dest = dest;
+            this.budget = budget;
+        }
+
+        /**
+         * True if there were items for this output but its destination accepted none of them.
+         */
+        boolean isBlocked() {
+            return this.moved == 0 && this.refused != null;
+        }
+
+        boolean hasRefused(String itemId) {
+            return this.refused != null && this.refused.contains(itemId);
+        }
+
+        void refuse(String itemId) {
+            if (this.refused == null) this.refused = new ArrayList<>(2);
+            if (!this.refused.contains(itemId)) this.refused.add(itemId);
+        }
+    }
+}
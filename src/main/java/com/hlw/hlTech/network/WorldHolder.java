@@ -26,44 +26,65 @@
 
 package com.hlw.hlTech.network;
 
+import com.hlw.hlTech.CableConfig;
 import com.hlw.hlTech.DebugLog;
 import com.hlw.hlTech.util.BlockPos;
 import com.hlw.hlTech.util.ChunkBlockHelper;
 import com.hlw.hlTech.util.Direction;
+import com.hlw.hlTech.util.LongHashMap;
 import com.hypixel.hytale.math.util.ChunkUtil;
-import com.hypixel.hytale.server.core.inventory.ItemStack;
-import com.hypixel.hytale.server.core.inventory.container.CombinedItemContainer;
 import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
-import com.hypixel.hytale.server.core.inventory.transaction.ItemStackTransaction;
 import com.hypixel.hytale.server.core.universe.world.World;
-import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
-import com.hypixel.hytale.server.core.universe.world.meta.BlockState;
-import com.hypixel.hytale.server.core.universe.world.meta.state.ItemContainerBlockState;
 import org.bson.BsonDocument;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
 
 public class WorldHolder {
-    private double currentTime = 0d;
-    private double updateTime = 1;
-    private long updateAmount = 0;
+    private final TickScheduler scheduler = new TickScheduler();
+    private long worldTimeMs = 0L;
+    private long lastSnapshotMs = 0L;
+    private final ArrayList<TransferWork> transferQueue = new ArrayList<>();
+    private int transferCursor = 0;
+    private int passRouteBudget = 1;
+    private double passElapsedSeconds = 0d;
+    private boolean slicedThisTick = false;
+    private long lastUpdateNanos = 0L;
+    private long maxUpdateNanos = 0L;
+    private double averageUpdateNanos = 0d;
     private final UUID uuid;
     private final CableNetworkManager manager;
 
     private final ReentrantLock lock = new ReentrantLock(true);
-    private final Map<BlockPos, NodeHolder> nodes =  new HashMap<>();
-    private final ArrayList<CableNetwork> networks = new ArrayList<>();
-    public Map<Long,ArrayList<NodeHolder>> chunksToLoad = new HashMap<>();
-    private final ArrayList<CableRetryEntry> pendingConnections = new ArrayList<>();
-    private final Map<BlockPos, ItemContainer> inventoryCache = new ConcurrentHashMap<>();
+    private final LongHashMap<NodeHolder> nodes =  new LongHashMap<>();
+    private final Set<CableNetwork> networks = new LinkedHashSet<>();
+    private final Map<Long, Set<NodeHolder>> nodesByChunk = new HashMap<>();
+    public Set<Long> chunksToLoad = new HashSet<>();
+    private final Set<Long> loadedChunks = new HashSet<>();
+    private final ConcurrentLinkedQueue<Long> chunkEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger chunkEventDepth = new AtomicInteger();
+    private volatile boolean chunkEventsActive = false;
+    private boolean chunksSwept = false;
+    private int maxChunkEventDepth = 0;
+    private static final int MAX_CONNECTION_ATTEMPTS = 10;
+    private final ConnectionRetryQueue connectionRetries = new ConnectionRetryQueue();
+    private final ContainerCache containerCache = new ContainerCache();
     private final Map<Long,ArrayList<BlockPos>> inventoryPositionsToRecheck = new HashMap<>();
+    private final TransferEngine transferEngine = new TransferEngine();
+    private final NetworkSaveWriter saveWriter;
+    private final NetworkJournal journal = new NetworkJournal();
+    private World accessedWorld;
+    private ChunkAccess chunkAccess;
+    private ChunkAccess chunkAccessOverride;
 
 
 
@@ -73,6 +94,8 @@ public class WorldHolder {
     public WorldHolder(UUID uuid,CableNetworkManager manager){
         this.uuid = uuid;
         this.manager = manager;
+        this.saveWriter = new NetworkSaveWriter(this.getSaveFilePath(), this.getJournalFilePath(), manager.getSaveExecutor());
+        this.scheduleJobs();
     }
 
 
@@ -84,20 +107,78 @@ public class WorldHolder {
         lock.unlock();
     }
 
-    public Map<BlockPos,NodeHolder> getNodes(){
-        return nodes;
+    /**
+     * The world's chunks as this holder reads them, or null while the world isn't registered.
+     */
+    private ChunkAccess chunks(){
+        if (this.chunkAccessOverride != null) return this.chunkAccessOverride;
+        World world = this.manager.getWorldFromRegistry(uuid);
+        if (world == null) return null;
+        if (world != this.accessedWorld) {
+            this.accessedWorld = world;
+            this.chunkAccess = ChunkAccess.of(world);
+        }
+        return this.chunkAccess;
+    }
+
+    /**
+     * Reads chunks through chunks instead of the registered world.
+     */
+    void setChunkAccess(ChunkAccess chunks){
+        this.chunkAccessOverride = chunks;
+    }
+
+    public Collection<NodeHolder> getNodes(){
+        return nodes.values();
     }
 
     public NodeHolder getNodeAt(BlockPos pos){
 
-            return nodes.get(pos);
+            return nodes.get(pos.asLong());
+
+    }
+
+    public NodeHolder getNodeAt(long packedPos){
+        return nodes.get(packedPos);
+    }
+
+    public Collection<NodeHolder> getNodesInChunk(long chunkId){
+        Set<NodeHolder> chunkNodes = nodesByChunk.get(chunkId);
+        return chunkNodes == null ? Collections.emptySet() : chunkNodes;
+    }
 
+    private void putNode(NodeHolder node){
+        NodeHolder previous = this.nodes.put(node.getPosition().asLong(), node);
+        long chunkId = ChunkBlockHelper.getChunkIdAt(node.getPosition());
+        Set<NodeHolder> chunkNodes = this.nodesByChunk.computeIfAbsent(chunkId, k -> new HashSet<>());
+        if (previous != null) chunkNodes.remove(previous);
+        chunkNodes.add(node);
     }
 
-    public ArrayList<CableNetwork> getNetworks(){
+    private NodeHolder removeNodeAt(BlockPos position){
+        NodeHolder removed = this.nodes.remove(position.asLong());
+        if (removed != null) {
+            long chunkId = ChunkBlockHelper.getChunkIdAt(position);
+            Set<NodeHolder> chunkNodes = this.nodesByChunk.get(chunkId);
+            if (chunkNodes != null) {
+                chunkNodes.remove(removed);
+                if (chunkNodes.isEmpty()) this.nodesByChunk.remove(chunkId);
+            }
+        }
+        return removed;
+    }
+
+    public Collection<CableNetwork> getNetworks(){
         return networks;
     }
 
+    public TransferEngine getTransferEngine(){
+        return transferEngine;
+    }
+
+    public String getStats(){
+        return "Nodes: " + nodes.size() + ", Networks: " + networks.size() + " (" + this.countDormantNetworks() + " dormant), Update: " + String.format("%.3f", averageUpdateNanos / 1_000_000d) + " ms avg, " + String.format("%.3f", lastUpdateNanos / 1_000_000d) + " ms last, " + String.format("%.3f", maxUpdateNanos / 1_000_000d) + " ms max, " + containerCache.getStats() + ", " + transferEngine.getStats() + ", Chunk events: " + chunkEventDepth.get() + " queued (" + maxChunkEventDepth + " max), " + chunksToLoad.size() + " chunks pending" + (chunkEventsActive ? "" : " (polling)") + ", Link retries: " + connectionRetries.size() + " (" + connectionRetries.waitingForChunks() + " waiting on " + connectionRetries.waitingChunkCount() + " chunks)";
+    }
 
 
 
@@ -116,89 +197,368 @@ public class WorldHolder {
 
 
 
-    public void tick(double deltaTime){
-        currentTime+= deltaTime;
-        if(currentTime>updateTime){
-            currentTime-=updateTime;
-            this.update();
+
+    private int countDormantNetworks(){
+        int dormant = 0;
+        for (CableNetwork network : this.networks) {
+            if (network.isDormant()) ++dormant;
         }
+        return dormant;
     }
-    private void update(){
-        updateAmount++;
 
+    public void tick(double deltaTime){
+        this.worldTimeMs += Math.round(deltaTime * 1000d);
+        if(!this.scheduler.advance(deltaTime) && !this.isTransferPassPending() && this.chunkEventDepth.get() == 0) return;
+        long updateStart = System.nanoTime();
         try{
             acquireLock();
-
-
-            if (this.dirty && this.updateAmount % 60L == 0L) {
-                this.saveNetworks();
+            this.slicedThisTick = false;
+            this.drainChunkEvents();
+            this.scheduler.runDue();
+            if (this.isTransferPassPending() && !this.slicedThisTick) {
+                this.runTransferSlice();
             }
+        }
+        finally {
+            releaseLock();
+            this.recordUpdateTime(System.nanoTime() - updateStart);
+        }
+    }
+    public long getLastUpdateNanos(){
+        return lastUpdateNanos;
+    }
 
+    public double getAverageUpdateNanos(){
+        return averageUpdateNanos;
+    }
 
-            if (!this.pendingConnections.isEmpty() ) {
+    private void scheduleJobs(){
+        CableNetworkManager manager = this.manager;
+        this.scheduler.add("transfer", () -> manager.getConfig().transferIntervalMs, false, this::transferPass);
+        this.scheduler.add("retries", () -> manager.getConfig().retryIntervalMs, true, elapsed -> {
+            if (this.connectionRetries.hasDue(this.worldTimeMs)) {
                 this.processInventoryConnectionRetries();
+            }
+        });
+        this.scheduler.add("chunks", () -> this.chunkEventsActive && this.chunksSwept ? manager.getConfig().chunkFallbackRecheckMs : manager.getConfig().chunkRecheckIntervalMs, true, elapsed -> this.recheckChunks());
+        this.scheduler.add("save", () -> manager.getConfig().journalFlushIntervalMs, true, elapsed -> this.flushSaves());
+    }
 
+    private void flushSaves(){
+        boolean forceSnapshot = false;
+        if (this.saveWriter.consumeFailure()) {
+            this.dirty = true;
+            forceSnapshot = true;
+        }
+        byte[] journalRecords = this.journal.takePending();
+        if (journalRecords != null) {
+            this.saveWriter.appendJournal(journalRecords);
+        }
+        CableConfig config = this.manager.getConfig();
+        if (this.dirty && (forceSnapshot || this.worldTimeMs - this.lastSnapshotMs >= config.snapshotIntervalMs || this.journal.getBytesSinceSnapshot() > config.journalCompactionBytes)) {
+            this.saveNetworks();
+        }
+    }
 
+    /**
+     * Polls the loaded chunks for unloads (there is no unload event to follow) and the chunks still waiting to load.
+     * With load events the second part is only a safety net for loads that happened before the world's nodes were
+     * read or whose event got lost, so after the first sweep it runs every chunkFallbackRecheckMs instead of
+     * chunkRecheckIntervalMs.
+     */
+    private void recheckChunks(){
+        this.chunksSwept = true;
+        if (!this.loadedChunks.isEmpty()) {
+            ChunkAccess chunks = this.chunks();
+            if (chunks != null) {
+                List<Long> unloaded = new ArrayList<>();
+                for (long chunkId : this.loadedChunks) {
+                    if (!chunks.isChunkLoaded(chunkId)) unloaded.add(chunkId);
+                }
+                this.onChunksUnloaded(unloaded);
             }
-            if(this.updateAmount%5L == 0L)
-            {
-
-                ArrayList<Long> toremove = new ArrayList<>();
+        }
+        ArrayList<Long> toremove = new ArrayList<>();
+        // Loading a chunk can park links on other chunks, which adds those to chunksToLoad.
+        for(var c : new ArrayList<>(chunksToLoad))
+        {
+            boolean result = TryChunk(c);
+            if(result){
+                toremove.add(c);
+            }
+        }
+        for(var ctr : toremove){
+            chunksToLoad.remove(ctr);
+        }
+    }
 
+    /**
+     * Called from the engine's chunk load event, on whatever thread raised it; the load is handled on the next tick.
+     */
+    public void queueChunkLoad(long chunkId) {
+        this.chunkEventsActive = true;
+        this.chunkEvents.add(chunkId);
+        this.chunkEventDepth.incrementAndGet();
+    }
 
-                for(var c : chunksToLoad.entrySet())
-                {
-                    boolean result = TryChunk(c.getKey());
-                    if(result){
-                        toremove.add(c.getKey());
-                    }
+    private void drainChunkEvents(){
+        int depth = this.chunkEventDepth.get();
+        if (depth == 0) return;
+        if (depth > this.maxChunkEventDepth) this.maxChunkEventDepth = depth;
+        Long chunkId;
+        while ((chunkId = this.chunkEvents.poll()) != null) {
+            this.chunkEventDepth.decrementAndGet();
+            if (this.chunksToLoad.contains(chunkId) || this.inventoryPositionsToRecheck.containsKey(chunkId)) {
+                this.onChunkLoaded(chunkId);
+                // The load event can come before the chunk is readable; links that found it so were parked on it
+                // again, and the chunk stays pending so the recheck finds it once it is.
+                if (!this.connectionRetries.isWaitingForChunk(chunkId)) {
+                    this.chunksToLoad.remove(chunkId);
                 }
+            }
+        }
+    }
 
+    /**
+     * Parks the networks next to the unloaded chunks that have no linked inventory left in a loaded chunk.
+     * Only networks with nodes in or beside those chunks are looked at, so the cost follows what unloaded.
+     */
+    private void parkDormantNetworks(Set<Long> unloadedChunks){
+        ChunkAccess chunks = this.chunks();
+        if (chunks == null) return;
+        Set<CableNetwork> candidates = new HashSet<>();
+        for (long chunkId : unloadedChunks) {
+            int chunkX = ChunkUtil.xOfChunkIndex(chunkId);
+            int chunkZ = ChunkUtil.zOfChunkIndex(chunkId);
+            this.collectNetworksInChunk(chunkId, candidates);
+            this.collectNetworksInChunk(ChunkUtil.indexChunk(chunkX + 1, chunkZ), candidates);
+            this.collectNetworksInChunk(ChunkUtil.indexChunk(chunkX - 1, chunkZ), candidates);
+            this.collectNetworksInChunk(ChunkUtil.indexChunk(chunkX, chunkZ + 1), candidates);
+            this.collectNetworksInChunk(ChunkUtil.indexChunk(chunkX, chunkZ - 1), candidates);
+        }
+        Map<Long, Boolean> loadedChunks = new HashMap<>();
+        for (CableNetwork network : candidates) {
+            if (network.isDormant() || network.connectedInventories.isEmpty()) continue;
+            boolean reachesLoaded = false;
+            for (BlockPos inventoryPos : network.connectedInventories.keySet()) {
+                long chunkId = ChunkBlockHelper.getChunkIdAt(inventoryPos);
+                if (loadedChunks.computeIfAbsent(chunkId, id -> !unloadedChunks.contains(id) && chunks.isChunkLoaded(id))) {
+                    reachesLoaded = true;
+                    break;
+                }
+            }
+            if (!reachesLoaded) this.parkNetwork(network);
+        }
+    }
 
+    private void collectNetworksInChunk(long chunkId, Set<CableNetwork> networks){
+        for (NodeHolder node : this.getNodesInChunk(chunkId)) {
+            CableNetwork network = node.getNetwork();
+            if (network != null) networks.add(network);
+        }
+    }
 
-
-                for(var ctr : toremove){
-                    chunksToLoad.remove(ctr);
+    /**
+     * Releases a network's containers. Every link is parked in the retry index on its inventory's chunk, so the
+     * chunk-load path links it again, which wakes the network.
+     */
+    private void parkNetwork(CableNetwork network){
+        for (BlockPos inventoryPos : network.connectedInventories.keySet()) {
+            this.containerCache.invalidate(inventoryPos);
+            long chunkId = ChunkBlockHelper.getChunkIdAt(inventoryPos);
+            long key = inventoryPos.asLong();
+            for (Direction dir : Direction.values()) {
+                NodeHolder node = this.getNodeAt(BlockPos.offset(key, dir));
+                if (node != null && node.getNetwork() == network && node.getConnections().contains(dir.getOpposite())) {
+                    this.waitForConnectionChunk(new ConnectionRetryQueue.Entry(node.getPosition(), inventoryPos, dir.getOpposite()), chunkId);
                 }
             }
+        }
+        network.park();
+    }
 
-            var world = this.manager.getWorldFromRegistry(uuid);
-            if (world != null && world.isAlive())
-            {
-                ArrayList<CableNetwork> networks = this.networks;
-                if (networks != null && !networks.isEmpty())
-                {
+    /**
+     * Unloads found by polling: the chunks are forgotten and the networks they cut off are parked.
+     */
+    private void onChunksUnloaded(List<Long> unloaded){
+        if (unloaded.isEmpty()) return;
+        for (long chunkId : unloaded) {
+            this.onChunkUnloaded(chunkId);
+        }
+        this.parkDormantNetworks(new HashSet<>(unloaded));
+    }
+
+    /**
+     * Containers of an unloaded chunk are gone; its nodes wait for the chunk to load again to relink them.
+     */
+    private void onChunkUnloaded(long chunkId){
+        this.loadedChunks.remove(chunkId);
+        this.containerCache.invalidateChunk(chunkId);
+        if (this.nodesByChunk.containsKey(chunkId)) {
+            this.chunksToLoad.add(chunkId);
+        }
+    }
 
-                    for(var n : networks)
-                        this.updateNetwork(n);
+    /**
+     * The scheduler also calls this while a sliced pass is still pending; that time is kept and added to the next
+     * pass's budget, so slicing doesn't cost throughput.
+     */
+    private void transferPass(double elapsedSeconds){
+        this.passElapsedSeconds += elapsedSeconds;
+        if (!this.isTransferPassPending()) {
+            double passSeconds = this.passElapsedSeconds;
+            this.passElapsedSeconds = 0d;
+            Collection<CableNetwork> networks = this.networks;
+            if (networks.isEmpty()) return;
+            for (CableNetwork network : networks) {
+                if (network.isDormant()) continue;
+                for (NodeHolder controller : network.getControllers()) {
+                    for (BlockPos input : controller.controllerNode.InputsAndOutputs.keySet()) {
+                        this.transferQueue.add(new TransferWork(controller, input));
+                    }
                 }
+            }
+            if (this.transferQueue.isEmpty()) return;
+            this.transferCursor = 0;
+            this.passRouteBudget = TransferEngine.computeRouteBudget(this.manager.getConfig(), passSeconds);
+            this.transferEngine.beginPass();
+        }
+        this.runTransferSlice();
+    }
 
+    /**
+     * A route that moved nothing stays parked until its source or destination changes, or idleRecheckMs has passed in
+     * case a change went unreported.
+     * A route whose destination refused everything backs off instead: it waits backoffBaseMs, doubled on every
+     * further refusal up to backoffMaxMs, and only a change of the destination wakes it early.
+     */
+    private boolean isRouteIdle(OutputData endPoint, ItemContainer source, ItemContainer dest){
+        if (endPoint.blockedCount > 0) {
+            long destVersion = this.containerCache.getVersion(dest);
+            if (destVersion >= 0L && destVersion != endPoint.blockedDestVersion) {
+                endPoint.blockedCount = 0;
+            } else if (this.worldTimeMs < endPoint.blockedUntilMs) {
+                this.transferEngine.onRouteBackedOff();
+                return true;
+            } else {
+                return false;
             }
+        }
+        if (endPoint.idleSourceVersion < 0L) return false;
+        if (this.containerCache.getVersion(source) != endPoint.idleSourceVersion
+                || this.containerCache.getVersion(dest) != endPoint.idleDestVersion
+                || this.worldTimeMs - endPoint.idleSinceMs >= this.manager.getConfig().idleRecheckMs) {
+            endPoint.wake();
+            return false;
+        }
+        this.transferEngine.onRouteIdle();
+        return true;
+    }
 
+    private void onDispatchDone(TransferEngine.Dispatch dispatch){
+        int moved = 0;
+        for (TransferEngine.Target target : dispatch.targets) {
+            moved += target.moved;
+            this.onRouteDone(dispatch.controller, target.output, dispatch.source, target.dest, target.moved, target.isBlocked());
+        }
+        if (moved > 0) {
+            dispatch.network.onTransferSuccess(dispatch.input);
+        }
+    }
 
+    private void onRouteDone(NodeHolder holder, OutputData endPoint, ItemContainer source, ItemContainer dest, int moved, boolean blocked){
+        if (moved > 0) {
+            endPoint.wake();
+            holder.onTransfer();
+            return;
+        }
+        long sourceVersion = this.containerCache.getVersion(source);
+        long destVersion = this.containerCache.getVersion(dest);
+        if (blocked) {
+            CableConfig config = this.manager.getConfig();
+            long delay = Math.max(1L, config.backoffBaseMs) << Math.min(endPoint.blockedCount, 20);
+            ++endPoint.blockedCount;
+            endPoint.blockedUntilMs = this.worldTimeMs + Math.min(delay, Math.max(1L, config.backoffMaxMs));
+            endPoint.blockedDestVersion = destVersion;
+            return;
+        }
+        endPoint.blockedCount = 0;
+        if (sourceVersion < 0L || destVersion < 0L) return;
+        endPoint.idleSourceVersion = sourceVersion;
+        endPoint.idleDestVersion = destVersion;
+        endPoint.idleSinceMs = this.worldTimeMs;
+    }
 
+    private boolean isTransferPassPending(){
+        return this.transferCursor < this.transferQueue.size();
+    }
 
+    /**
+     * Works through the pass queue until the tick's time or route budget runs out; the cursor (controller, input)
+     * stays where it stopped and the next tick resumes there. At least one input runs per slice.
+     */
+    private void runTransferSlice(){
+        this.slicedThisTick = true;
+        ChunkAccess chunks = this.chunks();
+        if (chunks == null || !chunks.isAlive()) {
+            this.finishTransferPass();
+            return;
         }
-        finally {
-            releaseLock();
+        this.onChunksUnloaded(this.containerCache.dropUnloadedChunks(chunks));
+        CableConfig config = this.manager.getConfig();
+        long deadline = config.transferTickBudgetMs > 0d ? System.nanoTime() + (long) (config.transferTickBudgetMs * 1_000_000d) : Long.MAX_VALUE;
+        int routeLimit = config.transferRoutesPerTick > 0 ? config.transferRoutesPerTick : Integer.MAX_VALUE;
+        this.transferEngine.onSlice();
+
+        this.processItemTransfers(chunks, deadline, routeLimit);
+
+        if (!this.isTransferPassPending()) {
+            this.finishTransferPass();
         }
+    }
 
+    private void finishTransferPass(){
+        this.transferQueue.clear();
+        this.transferCursor = 0;
+        this.transferEngine.endPass();
     }
-    private void updateNetwork( CableNetwork network) {
-            this.processItemTransfer(network);
+
+    /**
+     * The outputs still to do for a queued input, or null if its controller or route went away since the pass started.
+     */
+    private ArrayList<OutputData> resolveTransferWork(TransferWork work){
+        if (this.nodes.get(work.controller().getPosition().asLong()) != work.controller()) return null;
+        return work.controller().controllerNode.InputsAndOutputs.get(work.input());
     }
 
+    /**
+     * Budget for one route in this pass. A route with its own interval moves itemsPerTransfer items each time that
+     * interval has passed, and nothing in the passes in between.
+     */
+    private int routeBudget(OutputData endPoint, int passBudget){
+        if (endPoint.intervalMs <= 0) return passBudget;
+        if (this.worldTimeMs < endPoint.nextTransferMs) return 0;
+        endPoint.nextTransferMs = this.worldTimeMs + endPoint.intervalMs;
+        return Math.max(1, this.manager.getConfig().itemsPerTransfer);
+    }
+
+    private void recordUpdateTime(long nanos){
+        this.lastUpdateNanos = nanos;
+        this.maxUpdateNanos = Math.max(this.maxUpdateNanos, nanos);
+        this.averageUpdateNanos = this.averageUpdateNanos == 0d ? nanos : this.averageUpdateNanos * 0.95d + nanos * 0.05d;
+    }
     public void onCablePlaced( BlockPos position) {
         this.dirty = true;
         CableNode newNode = new CableNode(uuid, position);
         NodeHolder newNodeHolder =new NodeHolder(newNode);
-        this.nodes.put(position,newNodeHolder);
+        this.putNode(newNodeHolder);
+        this.journal.recordNodePlaced(NodeHolder.NodeType.CABLENODE, position);
         Set<CableNetwork> adjacentNetworks = new HashSet();
         List<Direction> potentialInventories = new ArrayList();
 
+        long key = position.asLong();
         for(Direction dir : Direction.values()) {
-            BlockPos neighborPos = position.offset(dir);
-            NodeHolder adjNode = this.getNodeAt(neighborPos);
+            NodeHolder adjNode = this.getNodeAt(BlockPos.offset(key, dir));
             if (adjNode != null) {
                 newNode.addConnection(dir);
                 adjNode.addConnection(dir.getOpposite());
@@ -207,8 +567,8 @@ public class WorldHolder {
                 }
             }
             else{
-                World world = this.manager.getWorldFromRegistry(uuid);
-                if(world!= null && ChunkBlockHelper.hasInventoryAt(world,neighborPos)){
+                ChunkAccess chunks = this.chunks();
+                if(chunks!= null && chunks.hasInventoryAt(position.offset(dir))){
                     potentialInventories.add(dir);
                 }
             }
@@ -226,13 +586,14 @@ public class WorldHolder {
         this.dirty = true;
         ControllerNode newNode = new ControllerNode(uuid,position);
         NodeHolder newNodeHolder =new NodeHolder(newNode);
-        this.nodes.put(position,newNodeHolder );
+        this.putNode(newNodeHolder);
+        this.journal.recordNodePlaced(NodeHolder.NodeType.CONTROLLERNODE, position);
         Set<CableNetwork> adjacentNetworks = new HashSet<>();
         List<Direction> potentialInventories = new ArrayList<>();
 
+        long key = position.asLong();
         for(Direction dir : Direction.values()) {
-            BlockPos neighborPos = position.offset(dir);
-            NodeHolder adjNode = this.getNodeAt(neighborPos);
+            NodeHolder adjNode = this.getNodeAt(BlockPos.offset(key, dir));
             if (adjNode != null) {
                 newNode.addConnection(dir);
                 adjNode.addConnection(dir.getOpposite());
@@ -241,8 +602,8 @@ public class WorldHolder {
                 }
             }
             else{
-                World world = this.manager.getWorldFromRegistry(uuid);
-                if(world!= null && ChunkBlockHelper.hasInventoryAt(world,neighborPos)){
+                ChunkAccess chunks = this.chunks();
+                if(chunks!= null && chunks.hasInventoryAt(position.offset(dir))){
                     potentialInventories.add(dir);
                 }
             }
@@ -256,73 +617,50 @@ public class WorldHolder {
     }
 
     public void onPotentialInventoryPlaced( BlockPos inventoryPos) {
+        this.containerCache.invalidate(inventoryPos);
+        if (this.nodes.isEmpty() || this.getNodeAt(inventoryPos) != null) return;
 
-        Map<BlockPos, NodeHolder> worldCables = this.nodes;
-        if (!worldCables.isEmpty()) {
-            for(NodeHolder node : worldCables.values()) {
-                BlockPos nodePos = node.getPosition();
-                int dx = Math.abs(nodePos.getX() - inventoryPos.getX());
-                int dy = Math.abs(nodePos.getY() - inventoryPos.getY());
-                int dz = Math.abs(nodePos.getZ() - inventoryPos.getZ());
-                if (dx <= 3 && dy <= 3 && dz <= 3) {
-                    for(Direction dir : Direction.values()) {
-                        BlockPos neighborPos = nodePos.offset(dir);
-                        if (neighborPos.equals(inventoryPos) && this.getNodeAt( neighborPos) == null) {
-                            this.pendingConnections.add(new CableRetryEntry( nodePos, neighborPos, dir, 0));
-                        }
-                    }
-                }
+        long key = inventoryPos.asLong();
+        for(Direction dir : Direction.values()) {
+            NodeHolder node = this.getNodeAt(BlockPos.offset(key, dir));
+            if (node != null) {
+                this.connectionRetries.add(new ConnectionRetryQueue.Entry(node.getPosition(), inventoryPos, dir.getOpposite()), this.worldTimeMs);
             }
         }
 
     }
     public void onInventoryRemoved( BlockPos removedPos)
     {
-        Map<BlockPos, NodeHolder> nodes = this.nodes;
-        if (!nodes.isEmpty())
+        if (!this.nodes.isEmpty() && this.containerCache.contains(removedPos))
         {
-            Set<BlockPos> inventoriesToRemove = new HashSet<>();
-
-            for(BlockPos invPos : this.inventoryCache.keySet())
+            ChunkAccess chunks = this.chunks();
+            boolean stillValid = false;
+            if (chunks != null)
             {
-                if (invPos.equals(removedPos))
-                {
-                    inventoriesToRemove.add(invPos);
-                }
+                stillValid = chunks.hasInventoryAt(removedPos);
             }
 
-            if (!inventoriesToRemove.isEmpty())
+            this.containerCache.invalidate(removedPos);
+            if (!stillValid)
             {
-                World world = this.manager.getWorldFromRegistry(uuid);
-
-                for(BlockPos invPosx : inventoriesToRemove)
+                this.containerCache.remove(removedPos);
+                long key = removedPos.asLong();
+                for(Direction dir : Direction.values())
                 {
-                    boolean stillValid = false;
-                    if (world != null)
-                    {
-                        stillValid = ChunkBlockHelper.hasInventoryAt(world, invPosx);
-                    }
-
-                    if (!stillValid)
+                    NodeHolder adjacentPipe = this.getNodeAt(BlockPos.offset(key, dir));
+                    if (adjacentPipe != null)
                     {
 
-                        this.inventoryCache.remove(invPosx);
-
-                        for(Direction dir : Direction.values())
+                        Direction pipeToInventoryDir = dir.getOpposite();
+                        adjacentPipe.removeConnection(pipeToInventoryDir);
+                        CableNetwork network = adjacentPipe.getNetwork();
+                        if (network != null)
                         {
-                            BlockPos neighborPos = invPosx.offset(dir);
-                            NodeHolder adjacentPipe = nodes.get(neighborPos);
-                            if (adjacentPipe != null)
-                            {
-
-                                Direction pipeToInventoryDir = dir.getOpposite();
-                                adjacentPipe.removeConnection(pipeToInventoryDir);
-                                CableNetwork network = adjacentPipe.getNetwork();
-                                if (network != null)
-                                {
-                                    network.removeInventory((invPosx));
-                                }
+                            for(NodeHolder controller : network.getControllers()) {
+                                this.journal.recordInventoryUnlinked(controller.getPosition(), removedPos);
                             }
+                            network.removeInventory((removedPos));
+                            this.dirty = true;
                         }
                     }
                 }
@@ -335,13 +673,13 @@ public class WorldHolder {
     {
 
         this.dirty = true;
-        Map<BlockPos, NodeHolder> nodes = this.nodes;
-
-        NodeHolder removedNode = nodes.remove(position);
+        NodeHolder removedNode = this.removeNodeAt(position);
         if (removedNode != null)
         {
+            this.journal.recordNodeRemoved(position);
+            long key = position.asLong();
             for(Direction dir : removedNode.getConnections()) {
-                NodeHolder neighbor = nodes.get(position.offset(dir));
+                NodeHolder neighbor = this.getNodeAt(BlockPos.offset(key, dir));
                 if (neighbor != null) {
                     neighbor.removeConnection(dir.getOpposite());
                 }
@@ -349,7 +687,8 @@ public class WorldHolder {
 
             CableNetwork oldNetwork = removedNode.getNetwork();
             if (oldNetwork != null) {
-                this.rebuildNetworksAfterRemoval( oldNetwork, position);
+                oldNetwork.removeNode(removedNode);
+                this.rebuildNetworksAfterRemoval( oldNetwork, removedNode);
             }
 
         }
@@ -360,12 +699,12 @@ public class WorldHolder {
 
     public void onControllerRemoved(BlockPos position){
         this.dirty = true;
-        Map<BlockPos,NodeHolder> nodes = this.nodes;
-
-        NodeHolder removedNode = nodes.remove(position);
+        NodeHolder removedNode = this.removeNodeAt(position);
         if(removedNode != null){
+            this.journal.recordNodeRemoved(position);
+            long key = position.asLong();
             for(Direction dir : removedNode.getConnections()){
-                NodeHolder neighbor = nodes.get(position.offset(dir));
+                NodeHolder neighbor = this.getNodeAt(BlockPos.offset(key, dir));
                 if(neighbor != null){
                     neighbor.removeConnection((dir.getOpposite()));
                 }
@@ -373,13 +712,74 @@ public class WorldHolder {
 
             CableNetwork oldNetwork = removedNode.getNetwork();
             if (oldNetwork != null) {
-                this.rebuildNetworksAfterRemoval(oldNetwork, position);
+                oldNetwork.removeNode(removedNode);
+                this.rebuildNetworksAfterRemoval(oldNetwork, removedNode);
             }
 
         }
 
     }
 
+    public void setRoute(NodeHolder controller, BlockPos input, OutputData output){
+        controller.controllerNode.AddOrModifyInputOutput(input, output);
+        this.onRouteModified(controller, input, output);
+    }
+
+    public void removeRoute(NodeHolder controller, BlockPos input, BlockPos output){
+        controller.controllerNode.RemoveInputOutput(input, output);
+        this.journal.recordRouteRemoved(controller.getPosition(), input, output);
+        this.dirty = true;
+    }
+
+    /**
+     * Gives a route its own transfer interval; 0 puts it back on the world's transfer interval.
+     */
+    public boolean setRouteInterval(NodeHolder controller, BlockPos input, BlockPos output, int intervalMs){
+        ArrayList<OutputData> outputs = controller.controllerNode.InputsAndOutputs.get(input);
+        if (outputs == null) return false;
+        for (OutputData data : outputs) {
+            if (data.outputPos.equals(output)) {
+                data.intervalMs = Math.max(0, intervalMs);
+                data.nextTransferMs = 0L;
+                this.onRouteModified(controller, input, data);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Outputs with a higher priority are offered items first.
+     */
+    public boolean setRoutePriority(NodeHolder controller, BlockPos input, BlockPos output, int priority){
+        ArrayList<OutputData> outputs = controller.controllerNode.InputsAndOutputs.get(input);
+        if (outputs == null) return false;
+        for (OutputData data : outputs) {
+            if (data.outputPos.equals(output)) {
+                data.priority = priority;
+                this.onRouteModified(controller, input, data);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void setDistributionStrategy(NodeHolder controller, BlockPos input, CableNode.DistributionStrategy strategy){
+        controller.controllerNode.setDistributionStrategy(input, strategy);
+        this.journal.recordInputStrategy(controller.getPosition(), input, controller.controllerNode.getDistributionStrategy(input));
+        this.dirty = true;
+    }
+
+    /**
+     * To be called after changing an OutputData in place (filter mode, item list) so the change gets journaled.
+     */
+    public void onRouteModified(NodeHolder controller, BlockPos input, OutputData output){
+        output.wake();
+        controller.controllerNode.invalidateOutputOrder();
+        this.journal.recordRouteSet(controller.getPosition(), input, output);
+        this.dirty = true;
+    }
+
     private void mergeOrInitNetwork(NodeHolder newNode, Set<CableNetwork> adjacentNetworks) {
         if (adjacentNetworks.isEmpty()) {
             CableNetwork newNetwork = new CableNetwork();
@@ -388,64 +788,73 @@ public class WorldHolder {
         } else if (adjacentNetworks.size() == 1) {
             adjacentNetworks.iterator().next().addNode(newNode);
         } else {
-            Iterator<CableNetwork> iterator = adjacentNetworks.iterator();
-            CableNetwork primaryNetwork = iterator.next();
-            primaryNetwork.addNode(newNode);
-            ArrayList<CableNetwork> networks = this.networks;
-
-            while(iterator.hasNext()) {
-                CableNetwork networkToMerge = iterator.next();
-                primaryNetwork.merge(networkToMerge);
-                networks.remove(networkToMerge);
+            CableNetwork primaryNetwork = null;
+            for(CableNetwork network : adjacentNetworks) {
+                primaryNetwork = primaryNetwork == null ? network : CableNetwork.union(primaryNetwork, network);
             }
+            for(CableNetwork network : adjacentNetworks) {
+                if (network != primaryNetwork) {
+                    this.networks.remove(network);
+                }
+            }
+            primaryNetwork.addNode(newNode);
         }
 
     }
     public void validateInventoryLink(NodeHolder node, BlockPos neighborPos, Direction direction) {
-        World world = this.manager.getWorldFromRegistry(this.uuid);
-        if (world != null) {
-            WorldChunk chunk = world.getChunkIfLoaded(ChunkUtil.indexChunkFromBlock(neighborPos.getX(), neighborPos.getZ()));
-            if (chunk == null) {
-                this.pendingConnections.add(new CableRetryEntry( node.getPosition(), neighborPos, direction, 0));
+        ChunkAccess chunks = this.chunks();
+        if (chunks != null) {
+            long chunkId = ChunkUtil.indexChunkFromBlock(neighborPos.getX(), neighborPos.getZ());
+            if (!chunks.isChunkLoaded(chunkId)) {
+                this.waitForConnectionChunk(new ConnectionRetryQueue.Entry(node.getPosition(), neighborPos, direction), chunkId);
             } else {
-                this.checkInventoryConnectionWithChunk( node, neighborPos, direction, chunk);
+                this.checkInventoryConnection( node, neighborPos, direction, chunks);
             }
         }
 
     }
-    private void checkInventoryConnectionWithChunk(NodeHolder node, BlockPos neighborPos, Direction direction, WorldChunk chunk) {
+    private void checkInventoryConnection(NodeHolder node, BlockPos neighborPos, Direction direction, ChunkAccess chunks) {
         int y = neighborPos.getY();
         if (ChunkBlockHelper.isValidY(y)) {
             try {
-                BlockState blockState = ChunkBlockHelper.getBlockStateFollowingFiller(chunk, neighborPos.getX(), y, neighborPos.getZ());
-                if (blockState instanceof ItemContainerBlockState) {
-                    ItemContainerBlockState containerState = (ItemContainerBlockState)blockState;
-                    ItemContainer container = containerState.getItemContainer();
+                if (chunks.hasInventoryAt(neighborPos)) {
+                    ItemContainer container = chunks.getItemContainer(neighborPos);
                     if (container == null) {
-                        this.pendingConnections.add(new CableRetryEntry( node.getPosition(), neighborPos, direction, 0));
+                        this.retryConnectionLater(new ConnectionRetryQueue.Entry(node.getPosition(), neighborPos, direction));
                         return;
                     }
 
                     this.registerInventoryConnection(node, neighborPos, direction, container);
-                } else if (blockState == null) {
                 }
             } catch (ArrayIndexOutOfBoundsException var10) {
-                this.pendingConnections.add(new CableRetryEntry(node.getPosition(), neighborPos, direction, 0));
+                this.retryConnectionLater(new ConnectionRetryQueue.Entry(node.getPosition(), neighborPos, direction));
             }
         }
 
     }
     private void registerInventoryConnection(NodeHolder node, BlockPos inventoryPos, Direction direction, ItemContainer container) {
-        this.inventoryCache.put(inventoryPos, container);
+        this.containerCache.put(inventoryPos, container);
         node.addConnection(direction);
         CableNetwork network = node.getNetwork();
         network.connectedInventories.put(inventoryPos,container);
+        network.wake();
+        network.onTopologyChanged();
     }
+    /**
+     * Links the nodes of a freshly loaded chunk, and of neighbouring chunks that waited for it, to their inventories.
+     * Pending links parked on the chunk are retried first. The rest runs once per load: repeated calls for a chunk
+     * that hasn't unloaded in between are ignored.
+     */
     public void onChunkLoaded(long chunkId)
     {
+            for (ConnectionRetryQueue.Entry entry : this.connectionRetries.takeChunk(chunkId)) {
+                this.retryConnection(entry);
+            }
+            if (!this.loadedChunks.add(chunkId)) return;
+            this.containerCache.invalidateChunk(chunkId);
 
-            var c = chunksToLoad.get(chunkId);
-            var world = manager.getWorldFromRegistry(uuid);
+            var c = chunksToLoad.contains(chunkId) ? this.getNodesInChunk(chunkId) : null;
+            var chunks = this.chunks();
             if(c!=null)
             {
                 for(var n : c)
@@ -455,7 +864,7 @@ public class WorldHolder {
 
                         var ne = n.getPosition().offset(d);
                         long offsetChunkId = ChunkBlockHelper.getChunkIdAt(ne);
-                        if( offsetChunkId!= chunkId  && world.getChunkIfLoaded(offsetChunkId) == null){
+                        if( offsetChunkId!= chunkId  && (chunks == null || !chunks.isChunkLoaded(offsetChunkId))){
                             var itl = inventoryPositionsToRecheck.get(offsetChunkId);
                             if(itl == null){
                                 itl = new ArrayList<>();
@@ -486,8 +895,8 @@ public class WorldHolder {
 
     }
     public boolean TryChunk( long chunkId){
-        var c= ChunkBlockHelper.isChunkLoaded(this.manager.getWorldFromRegistry(uuid),chunkId);
-        if(c)
+        var chunks = this.chunks();
+        if(chunks != null && chunks.isChunkLoaded(chunkId))
         {
             onChunkLoaded( chunkId);
             return true;
@@ -497,65 +906,122 @@ public class WorldHolder {
             return false;
         }
     }
-    private void rebuildNetworksAfterRemoval( CableNetwork oldNetwork, BlockPos removedPos) {
-        ArrayList<CableNetwork> networks = this.networks;
-        if (networks != null) {
-            networks.remove(oldNetwork);
-            Set<BlockPos> remainingPositions = new HashSet<>();
-
-            for(NodeHolder node : oldNetwork.getNodes()) {
-                if (!node.getPosition().equals(removedPos)) {
-                    remainingPositions.add(node.getPosition());
-                    node.setNetwork(null);
+    /**
+     * Runs one search per former neighbour of the removed node, interleaved one node at a time.
+     * Searches that meet are merged; a search that runs out of nodes while another is still going is a separate
+     * component and gets split off into a new network. The last search left standing is never finished: whatever it
+     * hasn't reached simply stays in oldNetwork, so the cost is bounded by the size of the parts that split off.
+     * Inventory links move with the nodes, and controllers keep their routes.
+     */
+    private void rebuildNetworksAfterRemoval( CableNetwork oldNetwork, NodeHolder removedNode) {
+        long removedKey = removedNode.getPosition().asLong();
+        LongHashMap<SplitSearch> owners = new LongHashMap<>();
+        List<SplitSearch> live = new ArrayList<>(6);
+        for(Direction dir : removedNode.getConnections()) {
+            long key = BlockPos.offset(removedKey, dir);
+            NodeHolder start = this.getNodeAt(key);
+            if (start == null) {
+                BlockPos inventoryPos = BlockPos.fromLong(key);
+                if (!this.isInventoryLinkedTo(oldNetwork, inventoryPos)) {
+                    oldNetwork.connectedInventories.remove(inventoryPos);
                 }
+                continue;
             }
+            SplitSearch search = new SplitSearch(start);
+            owners.put(key, search);
+            live.add(search);
+        }
 
-            while(!remainingPositions.isEmpty()) {
-                BlockPos start = remainingPositions.iterator().next();
-                CableNetwork newNetwork = new CableNetwork();
-                List<NodeHolder> nodesInNewNetwork = new ArrayList<>();
-                Queue<BlockPos> queue = new LinkedList<>();
-                queue.add(start);
-
-                while(!queue.isEmpty()) {
-                    BlockPos current = (BlockPos)queue.poll();
-                    if (remainingPositions.remove(current)) {
-                        NodeHolder nodex = this.getNodeAt(current);
-                        if (nodex != null) {
-                            newNetwork.addNode(nodex);
-                            nodesInNewNetwork.add(nodex);
-
-                            for(Direction dir : nodex.getConnections()) {
-                                BlockPos neighbor = current.offset(dir);
-                                if (remainingPositions.contains(neighbor)) {
-                                    queue.add(neighbor);
-                                }
-                            }
-                        }
-                    }
+        while (live.size() > 1) {
+            for(int i = 0; i < live.size() && live.size() > 1; ) {
+                SplitSearch search = live.get(i);
+                if (search.parent != search) {
+                    live.remove(i);
+                    continue;
+                }
+                if (search.frontier.isEmpty()) {
+                    live.remove(i);
+                    this.splitOff(oldNetwork, search.members);
+                    continue;
                 }
 
-                for(NodeHolder nodex : nodesInNewNetwork) {
-                    if (this.hasInventoryConnection(nodex)) {
-
-                        for(Direction dir : Direction.values()) {
-                            this.validateInventoryLink( nodex, nodex.getPosition().offset(dir), dir);
-
+                NodeHolder node = search.frontier.poll();
+                long current = node.getPosition().asLong();
+                for(Direction dir : node.getConnections()) {
+                    long key = BlockPos.offset(current, dir);
+                    NodeHolder neighbor = this.getNodeAt(key);
+                    if (neighbor == null) continue;
+                    SplitSearch owner = owners.get(key);
+                    if (owner == null) {
+                        owners.put(key, search);
+                        search.frontier.add(neighbor);
+                        search.members.add(neighbor);
+                    } else {
+                        owner = owner.find();
+                        if (owner != search) {
+                            search.absorb(owner);
                         }
                     }
                 }
+                ++i;
+            }
+        }
+
+        if (oldNetwork.isEmpty()) {
+            this.networks.remove(oldNetwork);
+        }
+    }
+
+    private void splitOff(CableNetwork oldNetwork, List<NodeHolder> members) {
+        CableNetwork newNetwork = new CableNetwork();
+        for(NodeHolder node : members) {
+            oldNetwork.removeNode(node);
+            newNetwork.addNode(node);
+        }
+        for(NodeHolder controller : newNetwork.getControllers()) {
+            for(BlockPos input : controller.controllerNode.InputsAndOutputs.keySet()) {
+                newNetwork.copyRoundRobinIndex(oldNetwork, input);
+            }
+        }
 
-                if (!newNetwork.isEmpty()) {
-                    networks.add(newNetwork);
+        List<BlockPos> movedInventories = new ArrayList<>();
+        for(NodeHolder node : members) {
+            long key = node.getPosition().asLong();
+            for(Direction dir : node.getConnections()) {
+                long inventoryKey = BlockPos.offset(key, dir);
+                if (this.getNodeAt(inventoryKey) != null) continue;
+                BlockPos inventoryPos = BlockPos.fromLong(inventoryKey);
+                ItemContainer container = oldNetwork.connectedInventories.get(inventoryPos);
+                if (container != null) {
+                    newNetwork.connectedInventories.put(inventoryPos, container);
+                    movedInventories.add(inventoryPos);
                 }
             }
         }
+        for(BlockPos inventoryPos : movedInventories) {
+            if (!this.isInventoryLinkedTo(oldNetwork, inventoryPos)) {
+                oldNetwork.connectedInventories.remove(inventoryPos);
+            }
+        }
+        if (oldNetwork.isDormant()) newNetwork.park();
+        this.networks.add(newNetwork);
+    }
 
+    private boolean isInventoryLinkedTo(CableNetwork network, BlockPos inventoryPos) {
+        long key = inventoryPos.asLong();
+        for(Direction dir : Direction.values()) {
+            NodeHolder node = this.getNodeAt(BlockPos.offset(key, dir));
+            if (node != null && node.getConnections().contains(dir.getOpposite()) && node.getNetwork() == network) {
+                return true;
+            }
+        }
+        return false;
     }
+
     public boolean hasInventoryConnection( NodeHolder node) {
+        long key = node.getPosition().asLong();
         for(Direction dir : node.getConnections()) {
-            BlockPos neighborPos = node.getPosition().offset(dir);
-            if (this.getNodeAt(neighborPos) == null && this.inventoryCache.containsKey(neighborPos)) {
+            if (this.getNodeAt(BlockPos.offset(key, dir)) == null && this.containerCache.contains(node.getPosition().offset(dir))) {
                 return true;
             }
         }
@@ -563,288 +1029,306 @@ public class WorldHolder {
         return false;
     }
     private void processInventoryConnectionRetries() {
-        for(CableRetryEntry entry : new HashSet<CableRetryEntry>(this.pendingConnections)) {
-            this.pendingConnections.remove(entry);
-            NodeHolder node = this.getNodeAt(entry.nodePos());
-            if (node != null && !node.getNetwork().connectedInventories.containsKey(entry.inventoryPos()) && !this.tryInventoryConnectionRetry(node, entry.inventoryPos(), entry.direction()) && entry.retryCount() < 10) {
-                this.pendingConnections.add(entry.withIncrementedRetry());
-            }
+        for(ConnectionRetryQueue.Entry entry : this.connectionRetries.takeDue(this.worldTimeMs)) {
+            this.retryConnection(entry);
         }
+    }
+
+    /**
+     * One attempt at a pending link. The link is resolved here: made, dropped, parked on its chunk or delayed.
+     */
+    private void retryConnection(ConnectionRetryQueue.Entry entry) {
+        NodeHolder node = this.getNodeAt(entry.nodePos());
+        if (node == null || node.getNetwork().connectedInventories.containsKey(entry.inventoryPos())) {
+            this.connectionRetries.remove(entry);
+            return;
+        }
+        ChunkAccess chunks = this.chunks();
+        BlockPos inventoryPos = entry.inventoryPos();
+        long chunkId = ChunkUtil.indexChunkFromBlock(inventoryPos.getX(), inventoryPos.getZ());
+        if (chunks != null && !chunks.isChunkLoaded(chunkId)) {
+            this.waitForConnectionChunk(entry, chunkId);
+        } else if (this.tryInventoryConnectionRetry(node, inventoryPos, entry.direction())) {
+            this.connectionRetries.remove(entry);
+        } else {
+            this.retryConnectionLater(entry);
+        }
+    }
+
+    /**
+     * The chunk is also marked as waiting to load, so either the chunk events or the polling fallback wake the link.
+     */
+    private void waitForConnectionChunk(ConnectionRetryQueue.Entry entry, long chunkId) {
+        this.connectionRetries.waitForChunk(entry, chunkId);
+        this.chunksToLoad.add(chunkId);
+    }
 
+    private void retryConnectionLater(ConnectionRetryQueue.Entry entry) {
+        this.connectionRetries.retryLater(entry, this.worldTimeMs, this.manager.getConfig().retryIntervalMs, MAX_CONNECTION_ATTEMPTS);
     }
 
     private boolean tryInventoryConnectionRetry( NodeHolder node, BlockPos neighborPos, Direction direction) {
-        World world = this.manager.getWorldFromRegistry(uuid);
-        if (world == null) {
+        ChunkAccess chunks = this.chunks();
+        if (chunks == null || !ChunkBlockHelper.isValidY(neighborPos.getY())) {
             return false;
-        } else {
-            WorldChunk chunk = world.getChunkIfLoaded(ChunkUtil.indexChunkFromBlock(neighborPos.getX(), neighborPos.getZ()));
-            if (chunk == null) {
-                return false;
-            } else {
-                int y = neighborPos.getY();
-                if (!ChunkBlockHelper.isValidY(y)) {
-                    return false;
-                } else {
-                    try {
-                        BlockState state = ChunkBlockHelper.getBlockStateFollowingFiller(chunk, neighborPos.getX(), y, neighborPos.getZ());
-                        if (state instanceof ItemContainerBlockState) {
-                            ItemContainerBlockState containerState = (ItemContainerBlockState)state;
-                            ItemContainer container = containerState.getItemContainer();
-                            if (container != null) {
-                                this.registerInventoryConnection(node, neighborPos, direction, container);
-                                return true;
-                            }
-                        }
-                    } catch (Exception var11) {
-                    }
-
-                    return false;
-                }
+        }
+        try {
+            ItemContainer container = chunks.getItemContainer(neighborPos);
+            if (container != null) {
+                this.registerInventoryConnection(node, neighborPos, direction, container);
+                return true;
             }
+        } catch (Exception var11) {
         }
+
+        return false;
     }
     public void refreshInventoryLinks() {
-        Map<BlockPos, NodeHolder> nodes = this.nodes;
-        if (nodes != null && !nodes.isEmpty()) {
-            for(NodeHolder node : nodes.values()) {
+        if (!this.nodes.isEmpty()) {
+            for(NodeHolder node : this.nodes.values()) {
+                long key = node.getPosition().asLong();
                 for(Direction dir : Direction.values()) {
-                    BlockPos neighborPos = node.getPosition().offset(dir);
-                    if (this.getNodeAt( neighborPos) == null) {
-                        this.validateInventoryLink(node, neighborPos, dir);
+                    if (this.getNodeAt(BlockPos.offset(key, dir)) == null) {
+                        this.validateInventoryLink(node, node.getPosition().offset(dir), dir);
                     }
                 }
             }
         }
 
     }
-    private void processItemTransfer(CableNetwork network)
+    private void processItemTransfers(ChunkAccess w, long deadline, int routeLimit)
     {
-        for(NodeHolder holder : network.getNodes())
+        int routes = 0;
+        for(; this.transferCursor < this.transferQueue.size(); ++this.transferCursor)
         {
-            if(holder.controllerNode!= null)
-            {
-                for(BlockPos start : holder.controllerNode.InputsAndOutputs.keySet())
-                {
-                    var w =manager.getWorldFromRegistry(holder.getWorldId());
-                    if(w == null) continue;
-                    if(!network.connectedInventories.containsKey(start))continue;
-                    ItemContainer startContainer = ChunkBlockHelper.getItemContainer(w,start );
-                    if(startContainer != null)
-                    {
-                        var endPoints =holder.controllerNode.InputsAndOutputs.get(start);
-                        if(endPoints== null)continue;
-                        for(OutputData endPoint : endPoints)
-                        {
-                            if(!network.connectedInventories.containsKey(endPoint.outputPos))continue;
-
-                            ItemContainer endContainer = ChunkBlockHelper.getItemContainer(w,endPoint.outputPos );
-                            if(endContainer != null)
-                            {
-                                this.transferItems(startContainer,endContainer,1,endPoint);
-                                holder.onTransfer();
-                                network.onTransferSuccess(holder.getPosition());
-                            }
-                        }
-                    }
-                }
-            }
+            if(routes > 0 && (routes >= routeLimit || System.nanoTime() >= deadline)) return;
+            TransferEngine.Dispatch dispatch = this.buildDispatch(w, this.transferQueue.get(this.transferCursor));
+            if(dispatch == null)continue;
+            routes += dispatch.targets.size();
+            this.transferEngine.dispatch(dispatch);
+            this.onDispatchDone(dispatch);
         }
     }
 
-    private int transferItems(ItemContainer source, ItemContainer dest, int maxItemsPerSlot,OutputData outputdata) {
-        int transferred = 0;
-        short startSlot = 0;
-        short endSlot = source.getCapacity();
-        if (source instanceof CombinedItemContainer combined) {
-            if (combined.getContainersSize() > 1) {
-                ItemContainer outputContainer = combined.getContainer(combined.getContainersSize() - 1);
-                startSlot = (short)(source.getCapacity() - outputContainer.getCapacity());
-            }
-        }
-        for(short slot = startSlot; slot < endSlot; ++slot) {
-            ItemStack stack = source.getItemStack(slot);
-            if (stack != null && !stack.isEmpty()) {
-                if (outputdata != null) {
-                    String itemId = stack.getItemId();
-                    if(outputdata.allowAll){
-                        if(outputdata.itemIds.contains(itemId)) continue;
-                    }
-                    else{
-                        if(!outputdata.itemIds.contains(itemId))continue;
-                    }
-                }
-
-
-
-                int countToTransfer = Math.min(stack.getQuantity(), maxItemsPerSlot);
-                ItemStack toTransfer = stack.withQuantity(countToTransfer);
-                if (toTransfer != null) {
-                    ItemStackTransaction addResult = dest.addItemStack(toTransfer);
-                    if (addResult.succeeded()) {
-                        ItemStack remainder = addResult.getRemainder();
-                        int actuallyAdded = countToTransfer;
-                        if (remainder != null && !remainder.isEmpty()) {
-                            actuallyAdded = countToTransfer - remainder.getQuantity();
-                        }
-
-                        if (actuallyAdded > 0) {
-                            int remaining = stack.getQuantity() - actuallyAdded;
-                            if (remaining <= 0) {
-                                source.removeItemStackFromSlot(slot);
-                            } else {
-                                source.removeItemStackFromSlot(slot, actuallyAdded);
-                            }
-
-                            transferred += actuallyAdded;
-                            return transferred;
-                        }
-                    }
-                }
-            }
+    /**
+     * The outputs of one queued input that should run this pass, or null if there are none.
+     */
+    private TransferEngine.Dispatch buildDispatch(ChunkAccess w, TransferWork work)
+    {
+        var endPoints = this.resolveTransferWork(work);
+        if(endPoints == null)return null;
+        NodeHolder holder = work.controller();
+        CableNetwork network = holder.getNetwork();
+        BlockPos start = work.input();
+        if(network == null || !network.connectedInventories.containsKey(start))return null;
+        ItemContainer startContainer = this.containerCache.get(w,start );
+        if(startContainer == null)return null;
+        TransferEngine.Dispatch dispatch = null;
+        for(OutputData endPoint : holder.controllerNode.getOrderedOutputs(start, network, this.nodes))
+        {
+            if(!network.connectedInventories.containsKey(endPoint.outputPos))continue;
+            ItemContainer endContainer = this.containerCache.get(w,endPoint.outputPos );
+            if(endContainer == null)continue;
+            if(this.isRouteIdle(endPoint, startContainer, endContainer))continue;
+            int budget = this.routeBudget(endPoint, this.passRouteBudget);
+            if(budget <= 0)continue;
+            if(dispatch == null) dispatch = new TransferEngine.Dispatch(holder, network, start, startContainer);
+            dispatch.addTarget(endPoint, endContainer, budget);
         }
-
-        return transferred;
+        if(dispatch != null) OutputSelector.of(holder.controllerNode.getDistributionStrategy(start)).arrange(dispatch, this.containerCache);
+        return dispatch;
     }
 
     private Path getSaveFilePath() {
         return Path.of("plugins", "hltech", "worlds").toAbsolutePath().resolve(uuid.toString()+".cable_networks.dat");
     }
-    public synchronized void saveNetworks() {
-        Path saveFile = this.getSaveFilePath();
-        List<NodeHolder> nodeSnapshot = new ArrayList<>();
-        int totalNodes = 0;
-
-        for( Map.Entry<BlockPos, NodeHolder> worldEntry : this.nodes.entrySet()) {
-
-            nodeSnapshot.add( worldEntry.getValue());
-            totalNodes += 1;
+    private Path getJournalFilePath() {
+        return Path.of("plugins", "hltech", "worlds").toAbsolutePath().resolve(uuid.toString()+".cable_networks.journal");
+    }
+    /**
+     * Copies the nodes under the world lock and hands the copy to the save thread; the file is written off the tick.
+     * Between snapshots, changes only go to the journal.
+     */
+    public void saveNetworks() {
+        NetworkSnapshot snapshot = NetworkSnapshot.capture(this.nodes);
+        this.journal.onSnapshot();
+        this.dirty = false;
+        this.lastSnapshotMs = this.worldTimeMs;
+        this.saveWriter.submit(snapshot);
+        if (this.manager.getConfig().debugMode) {
+            System.out.println("[WorldHolder " + uuid + "] " + this.getStats());
         }
-
+    }
+    public void loadNetworks() {
+        Path saveFile = this.getSaveFilePath();
+        Path journalFile = this.getJournalFilePath();
         try {
-            if (saveFile.getParent() != null) {
-                Files.createDirectories(saveFile.getParent());
+            LongHashMap<NetworkSnapshot.NodeRecord> loadedNodes = new LongHashMap<>();
+            long epoch = 0L;
+            if (Files.exists(saveFile, new LinkOption[0])) {
+                NetworkSnapshot.Contents contents;
+                try {
+                    contents = NetworkSnapshot.read(saveFile);
+                } catch (IOException | RuntimeException e) {
+                    this.keepUnreadableSave(saveFile);
+                    throw e;
+                }
+                loadedNodes = contents.nodes();
+                epoch = contents.epoch();
             }
 
-            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(saveFile))))
-            {
-                out.writeInt(1);
-                out.writeInt(totalNodes);
-
-                for(NodeHolder node : nodeSnapshot)
-                {
-                    out.writeInt(node.type.ordinal());
-                    out.writeInt(node.getPosition().getX());
-                    out.writeInt(node.getPosition().getY());
-                    out.writeInt(node.getPosition().getZ());
-                    if(node.type == NodeHolder.NodeType.CONTROLLERNODE)
-                    {
-                        out.writeInt(node.controllerNode.InputsAndOutputs.size());
-                        for(var item : node.controllerNode.InputsAndOutputs.entrySet())
-                        {
-                            out.writeInt(item.getKey().getX());
-                            out.writeInt(item.getKey().getY());
-                            out.writeInt(item.getKey().getZ());
-                            out.writeInt(item.getValue().size());
-                            for(var itm : item.getValue())
-                            {
-                                itm.writeToDataStream(out);
-                            }
-
-                        }
-                    }
-
+            NetworkJournal.ReplayResult replayed;
+            try {
+                replayed = NetworkJournal.replay(journalFile, epoch, loadedNodes);
+            } catch (IOException | RuntimeException e) {
+                // The snapshot is still good; keep it (and whatever the journal applied) rather than loading nothing.
+                System.out.println("Failed to replay the node network journal, keeping the save file state: " + e.getMessage());
+                replayed = new NetworkJournal.ReplayResult(0, true, 0L, 0L);
+                this.dirty = true;
+            }
+            if (replayed.records() < 0) {
+                System.out.println("Journal is older than the save file, discarding it");
+                Files.deleteIfExists(journalFile);
+            } else {
+                if (replayed.records() > 0) {
+                    System.out.println("Replayed " + replayed.records() + " journal records");
+                    this.dirty = true;
+                }
+                if (replayed.isDamaged()) {
+                    NetworkJournal.truncate(journalFile, replayed.validLength());
                 }
             }
+            this.saveWriter.setEpoch(epoch);
 
-            System.out.println("Saved " + totalNodes + " nodes");
-            this.dirty = false;
-        } catch (IOException var12) {
-            System.out.println("Failed to save node networks: " + var12.getMessage());
+            if (loadedNodes.isEmpty()) {
+                System.out.println("No saved node networks found");
+            } else {
+                this.restoreNetworks(loadedNodes, replayed.topologyChanged());
+                System.out.println("Loaded " + loadedNodes.size() + " nodes");
+            }
+        } catch (IOException | RuntimeException var15) {
+            System.out.println("Failed to load node networks: " + var15.getMessage());
         }
 
     }
-    public void loadNetworks() {
-        Path saveFile = this.getSaveFilePath();
-        if (!Files.exists(saveFile, new LinkOption[0])) {
-            System.out.println("No saved node networks found");
-        } else {
-            try {
-                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(saveFile)))) {
-                    int version = in.readInt();
-                    if (version > 1) {
-                        System.out.println("Save file version " + version + " is newer than supported");
-                    }
 
-                    int nodeCount = in.readInt();
-                    if (nodeCount < 0 || nodeCount > 1000000) {
-                        System.out.println("Invalid node count: " + nodeCount);
-                        return;
-                    }
+    /**
+     * The next snapshot replaces the save file with whatever this world holds now, which after a failed load is
+     * close to nothing; keep a copy of the file that couldn't be read (for example one written by a newer version).
+     */
+    private void keepUnreadableSave(Path saveFile) {
+        Path copy = saveFile.resolveSibling(saveFile.getFileName() + ".unreadable");
+        try {
+            Files.copy(saveFile, copy, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Kept the unreadable save file as " + copy);
+        } catch (IOException e) {
+            System.out.println("Failed to keep a copy of the unreadable save file: " + e.getMessage());
+        }
+    }
 
-                    List<LoadedCableData> loadedNodes = new ArrayList<>(nodeCount);
-                    HashMap<BlockPos,ArrayList<OutputData>> IO = new HashMap<>();
-                    for(int i = 0; i < nodeCount; ++i) {
-                        try {
-                            NodeHolder.NodeType ty = NodeHolder.NodeType.values()[in.readInt()];
-                            BlockPos position = new BlockPos(in.readInt(), in.readInt(), in.readInt());
-                            if(ty == NodeHolder.NodeType.CONTROLLERNODE){
-                                int IOsize = in.readInt();
-                                IO = new HashMap<>();
-                                for(int j = 0; j<IOsize; j++){
-                                    BlockPos inputPos = new BlockPos(in.readInt(),in.readInt(),in.readInt());
-                                    int Osize = in.readInt();
-                                    ArrayList<OutputData> positions = new ArrayList<>();
-                                    for(int k = 0;k<Osize;k++){
-                                        var outputdata = OutputData.readFromDataStream(in);
-                                        positions.add(outputdata);
-                                    }
-                                    IO.put(inputPos,positions);
-                                }
-                            }
-                            loadedNodes.add(new LoadedCableData(ty, position,IO));
+    /**
+     * Creates the loaded nodes and their networks, from the saved topology if it is still valid.
+     * @param topologyChanged true if the journal placed or removed nodes after the snapshot, which makes its topology stale
+     */
+    void restoreNetworks(LongHashMap<NetworkSnapshot.NodeRecord> loadedNodes, boolean topologyChanged) {
+        if (topologyChanged || !this.restoreSavedTopology(loadedNodes)) {
+            this.rebuildNetworksFromLoadedData(loadedNodes.values());
+        }
+    }
 
-                        } catch (IllegalArgumentException var23) {
-                            System.out.println("Skipping invalid node " + i);
-                        }
-                    }
+    /**
+     * Builds the networks straight from the connection masks and network indices stored in the save file.
+     * Returns false without touching anything if that data is missing, or if verifyLoadedTopology is set and it
+     * doesn't match the node positions; the caller then recomputes everything.
+     */
+    private boolean restoreSavedTopology(LongHashMap<NetworkSnapshot.NodeRecord> loadedNodes) {
+        int networkCount = 0;
+        for(NetworkSnapshot.NodeRecord data : loadedNodes.values()) {
+            if (data.networkId() < 0) return false;
+            networkCount = Math.max(networkCount, data.networkId() + 1);
+        }
+        if (this.manager.getConfig().verifyLoadedTopology && !isSavedTopologyConsistent(loadedNodes)) {
+            System.out.println("Saved topology doesn't match the nodes, rebuilding networks");
+            return false;
+        }
 
-                    if (!loadedNodes.isEmpty()) {
-                        this.rebuildNetworksFromLoadedData(loadedNodes);
-                        System.out.println("Loaded " + loadedNodes.size() + " nodes");
-                    }
+        Direction[] directions = Direction.values();
+        CableNetwork[] restored = new CableNetwork[networkCount];
+        for(NetworkSnapshot.NodeRecord data : loadedNodes.values()) {
+            NodeHolder node = null;
+            if(data.type() == NodeHolder.NodeType.CABLENODE){
+                node = new NodeHolder( new CableNode(uuid, data.position()));
+            }
+            else if(data.type() == NodeHolder.NodeType.CONTROLLERNODE){
+                node = new NodeHolder((new ControllerNode(uuid,data.position())));
+                node.controllerNode.InputsAndOutputs = data.controllerData();
+                node.controllerNode.setInputStrategies(data.inputStrategies());
+            }
+            if(node == null) continue;
+
+            for(Direction dir : directions) {
+                if ((data.connectionMask() & (1 << dir.ordinal())) != 0) {
+                    node.addConnection(dir);
                 }
+            }
+            this.putNode(node);
+            AddNodeToChunkToLoad(node);
 
-                return;
-            } catch (IOException var15) {
-                System.out.println("Failed to load node networks: " + var15.getMessage());
+            CableNetwork network = restored[data.networkId()];
+            if (network == null) {
+                network = new CableNetwork();
+                restored[data.networkId()] = network;
+                this.networks.add(network);
             }
+            network.addNode(node);
         }
 
+        System.out.println("Restored " + networks.size() + " networks from saved topology");
+        return true;
+    }
+
+    /**
+     * Every stored connection must point at a node of the same network, and every pair of adjacent nodes must be connected.
+     */
+    private static boolean isSavedTopologyConsistent(LongHashMap<NetworkSnapshot.NodeRecord> loadedNodes) {
+        Direction[] directions = Direction.values();
+        for(NetworkSnapshot.NodeRecord data : loadedNodes.values()) {
+            long key = data.position().asLong();
+            for(Direction dir : directions) {
+                NetworkSnapshot.NodeRecord neighbor = loadedNodes.get(BlockPos.offset(key, dir));
+                boolean connected = (data.connectionMask() & (1 << dir.ordinal())) != 0;
+                if (connected != (neighbor != null)) return false;
+                if (neighbor != null && neighbor.networkId() != data.networkId()) return false;
+            }
+        }
+        return true;
     }
 
-    private void rebuildNetworksFromLoadedData(List<LoadedCableData> loadedPipes) {
-        for(LoadedCableData data : loadedPipes) {
+    private void rebuildNetworksFromLoadedData(Collection<NetworkSnapshot.NodeRecord> loadedPipes) {
+        for(NetworkSnapshot.NodeRecord data : loadedPipes) {
             NodeHolder node = null;
-            if(data.type == NodeHolder.NodeType.CABLENODE){
-                node = new NodeHolder( new CableNode(uuid, data.position));
+            if(data.type() == NodeHolder.NodeType.CABLENODE){
+                node = new NodeHolder( new CableNode(uuid, data.position()));
             }
-            else if(data.type == NodeHolder.NodeType.CONTROLLERNODE){
-                node = new NodeHolder((new ControllerNode(uuid,data.position)));
-                node.controllerNode.InputsAndOutputs = data.controllerData;
+            else if(data.type() == NodeHolder.NodeType.CONTROLLERNODE){
+                node = new NodeHolder((new ControllerNode(uuid,data.position())));
+                node.controllerNode.InputsAndOutputs = data.controllerData();
+                node.controllerNode.setInputStrategies(data.inputStrategies());
             }
+            if(node == null) continue;
 
+            this.putNode(node);
             AddNodeToChunkToLoad(node);
-            this.nodes.put(data.position, node);
         }
 
-        for(LoadedCableData data : loadedPipes) {
-            NodeHolder node = this.getNodeAt( data.position);
+        for(NetworkSnapshot.NodeRecord data : loadedPipes) {
+            NodeHolder node = this.getNodeAt( data.position());
             if (node != null) {
                 Set<CableNetwork> adjacentNetworks = new HashSet<>();
+                long key = data.position().asLong();
 
                 for(Direction dir : Direction.values()) {
-                    NodeHolder neighbor = this.getNodeAt( data.position.offset(dir));
+                    NodeHolder neighbor = this.getNodeAt( BlockPos.offset(key, dir));
                     if (neighbor != null) {
                         node.addConnection(dir);
                         neighbor.addConnection(dir.getOpposite());
@@ -868,18 +1352,7 @@ public class WorldHolder {
 
     public void AddNodeToChunkToLoad(NodeHolder node)
     {
-        ArrayList<NodeHolder> chunk = null;
-        var chunkId= ChunkBlockHelper.getChunkIdAt(node.getPosition());
-        chunk = chunksToLoad.get(chunkId);
-        if(chunk!= null)chunk.add(node);
-        else
-        {
-            chunk = new ArrayList<>();
-            chunk.add(node);
-            chunksToLoad.put(chunkId,chunk);
-        }
-
-
+        chunksToLoad.add(ChunkBlockHelper.getChunkIdAt(node.getPosition()));
     }
 
 
@@ -887,22 +1360,31 @@ public class WorldHolder {
 
 
 
-    private static class LoadedCableData {
-        final BlockPos position;
-        final NodeHolder.NodeType type;
-        final Map<BlockPos,ArrayList<OutputData>> controllerData;
+    private static record TransferWork(NodeHolder controller, BlockPos input) {
+    }
 
-        LoadedCableData(NodeHolder.NodeType type, BlockPos position, Map<BlockPos,ArrayList<OutputData>> controllerData/*, CableType cableType, CableNode.CableMode mode, int priority, CableNode.DistributionStrategy strategy*/) {
-            this.type = type;
-            this.position = position;
-            this.controllerData = controllerData;
+    private static class SplitSearch {
+        SplitSearch parent = this;
+        final ArrayDeque<NodeHolder> frontier = new ArrayDeque<>();
+        final ArrayList<NodeHolder> members = new ArrayList<>();
 
+        SplitSearch(NodeHolder start) {
+            this.frontier.add(start);
+            this.members.add(start);
+        }
+
+        SplitSearch find() {
+            SplitSearch root = this;
+            while (root.parent != root) root = root.parent;
+            return root;
         }
-    }
 
-    private static record CableRetryEntry(BlockPos nodePos, BlockPos inventoryPos, Direction direction, int retryCount) {
-        CableRetryEntry withIncrementedRetry() {
-            return new CableRetryEntry( this.nodePos, this.inventoryPos, this.direction, this.retryCount + 1);
+        void absorb(SplitSearch other) {
+            other.parent = this;
+            this.frontier.addAll(other.frontier);
+            this.members.addAll(other.members);
+            other.frontier.clear();
+            other.members.clear();
         }
     }
 
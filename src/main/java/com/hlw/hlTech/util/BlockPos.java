@@ -6,6 +6,7 @@
  * The modifications are licensed under the LGPL v3.
  * * Summary of changes:
  * - Added the FromString function to deserialize from a string to a BlockPos.
+ * - Added the packed long encoding used as allocation-free map key.
  * ----------------------------
  *
  * This library is free software; you can redistribute it and/or
@@ -21,9 +22,16 @@ import javax.annotation.Nonnull;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.Objects;
 
 public class BlockPos {
+    // Packed layout: x in the upper 26 bits, z in the next 26 bits, y in the lower 12 bits (all two's complement).
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1L;
+    private static final long Y_MASK = (1L << Y_BITS) - 1L;
+    private static final int X_SHIFT = XZ_BITS + Y_BITS;
+    private static final int Z_SHIFT = Y_BITS;
+
     private final int x;
     private final int y;
     private final int z;
@@ -62,6 +70,34 @@ public class BlockPos {
         return new BlockPos(this.x + dx, this.y + dy, this.z + dz);
     }
 
+    public long asLong() {
+        return pack(this.x, this.y, this.z);
+    }
+
+    public static BlockPos fromLong(long packed) {
+        return new BlockPos(unpackX(packed), unpackY(packed), unpackZ(packed));
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((long) x & XZ_MASK) << X_SHIFT | ((long) z & XZ_MASK) << Z_SHIFT | ((long) y & Y_MASK);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> X_SHIFT);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << XZ_BITS >> (64 - XZ_BITS));
+    }
+
+    public static long offset(long packed, Direction direction) {
+        return pack(unpackX(packed) + direction.getOffsetX(), unpackY(packed) + direction.getOffsetY(), unpackZ(packed) + direction.getOffsetZ());
+    }
+
 
     public int manhattanDistance(BlockPos other) {
         return Math.abs(this.x - other.x) + Math.abs(this.y - other.y) + Math.abs(this.z - other.z);
@@ -87,7 +123,8 @@ public class BlockPos {
     }
 
     public int hashCode() {
-        return Objects.hash(new Object[]{this.x, this.y, this.z});
+        long h = this.asLong() * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
     }
 
     public String toString() {
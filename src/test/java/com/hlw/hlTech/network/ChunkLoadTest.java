@@ -0,0 +1,78 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.CableConfig;
+import com.hlw.hlTech.util.BlockPos;
+import com.hypixel.hytale.server.core.inventory.container.SimpleItemContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A cable at x = 0 with a chest west of it, across the chunk border at x = -1.
+ */
+class ChunkLoadTest {
+    private static final BlockPos CABLE = new BlockPos(0, 64, 0);
+    private static final BlockPos CHEST = new BlockPos(-1, 64, 0);
+
+    private final TestChunks chunks = new TestChunks();
+    private WorldHolder world;
+
+    @BeforeEach
+    void setUp() {
+        CableConfig config = new CableConfig();
+        config.chunkRecheckIntervalMs = 1000L;
+        config.journalFlushIntervalMs = Long.MAX_VALUE;
+        CableNetworkManager manager = new CableNetworkManager();
+        manager.setConfig(config);
+        this.world = new WorldHolder(UUID.randomUUID(), manager);
+        this.world.setChunkAccess(this.chunks);
+
+        this.chunks.load(CABLE);
+        this.chunks.place(CHEST, new SimpleItemContainer((short) 9));
+        this.world.onCablePlaced(CABLE);
+        this.world.refreshInventoryLinks();
+    }
+
+    @Test
+    void linkWaitsForTheChestsChunk() {
+        assertFalse(this.isLinked());
+        assertTrue(this.world.chunksToLoad.contains(TestChunks.chunkOf(CHEST)));
+
+        this.chunks.load(CHEST);
+        this.world.queueChunkLoad(TestChunks.chunkOf(CHEST));
+        this.world.tick(0.05d);
+
+        assertTrue(this.isLinked());
+        assertFalse(this.world.chunksToLoad.contains(TestChunks.chunkOf(CHEST)));
+    }
+
+    @Test
+    void loadEventBeforeTheChunkIsReadableKeepsItPending() {
+        this.world.queueChunkLoad(TestChunks.chunkOf(CHEST));
+        this.world.tick(0.05d);
+
+        assertFalse(this.isLinked());
+        assertTrue(this.world.chunksToLoad.contains(TestChunks.chunkOf(CHEST)));
+
+        this.chunks.load(CHEST);
+        for (int i = 0; i < 4 && !this.isLinked(); i++) this.world.tick(1d);
+
+        assertTrue(this.isLinked());
+    }
+
+    @Test
+    void pollingFindsTheLoadWithoutEvents() {
+        this.chunks.load(CHEST);
+        for (int i = 0; i < 4 && !this.isLinked(); i++) this.world.tick(1d);
+
+        assertTrue(this.isLinked());
+        assertFalse(this.world.chunksToLoad.contains(TestChunks.chunkOf(CHEST)));
+    }
+
+    private boolean isLinked() {
+        return this.world.getNodeAt(CABLE).getNetwork().connectedInventories.containsKey(CHEST);
+    }
+}
@@ -0,0 +1,132 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.Direction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionRetryQueueTest {
+    private static final long BASE_MS = 100L;
+    private static final ConnectionRetryQueue.Entry ENTRY = new ConnectionRetryQueue.Entry(new BlockPos(0, 64, 0), new BlockPos(0, 64, 1), Direction.SOUTH);
+    private static final ConnectionRetryQueue.Entry OTHER = new ConnectionRetryQueue.Entry(new BlockPos(5, 64, 0), new BlockPos(5, 64, 1), Direction.SOUTH);
+
+    private final ConnectionRetryQueue queue = new ConnectionRetryQueue();
+
+    @Test
+    void addedEntriesAreDueAtOnceAndHandedBackOnce() {
+        this.queue.add(ENTRY, 1000L);
+
+        assertFalse(this.queue.hasDue(999L));
+        assertTrue(this.queue.hasDue(1000L));
+        assertEquals(List.of(ENTRY), this.queue.takeDue(1000L));
+        assertEquals(List.of(), this.queue.takeDue(5000L));
+        assertEquals(1, this.queue.size());
+    }
+
+    @Test
+    void retryDelayDoublesPerAttemptUpToTheCap() {
+        long now = 0L;
+        for (int attempt = 1; attempt <= 8; attempt++) {
+            assertTrue(this.queue.retryLater(ENTRY, now, BASE_MS, 10));
+            long delay = BASE_MS << Math.min(attempt - 1, 5);
+            assertEquals(List.of(), this.queue.takeDue(now + delay - 1), "attempt " + attempt);
+            assertEquals(List.of(ENTRY), this.queue.takeDue(now + delay), "attempt " + attempt);
+            now += delay;
+        }
+    }
+
+    @Test
+    void entriesAreDroppedAfterMaxAttempts() {
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            assertTrue(this.queue.retryLater(ENTRY, 0L, BASE_MS, 3));
+        }
+
+        assertFalse(this.queue.retryLater(ENTRY, 0L, BASE_MS, 3));
+        assertEquals(0, this.queue.size());
+        assertFalse(this.queue.hasDue(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    void addForgetsEarlierAttempts() {
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            this.queue.retryLater(ENTRY, 0L, BASE_MS, 10);
+        }
+        this.queue.add(ENTRY, 0L);
+        this.queue.takeDue(0L);
+
+        this.queue.retryLater(ENTRY, 0L, BASE_MS, 10);
+
+        assertEquals(List.of(ENTRY), this.queue.takeDue(BASE_MS));
+    }
+
+    @Test
+    void rescheduledEntriesOnlyFireAtTheirNewTime() {
+        this.queue.retryLater(ENTRY, 0L, BASE_MS, 10);
+        this.queue.retryLater(ENTRY, 0L, BASE_MS, 10);
+
+        assertFalse(this.queue.hasDue(BASE_MS));
+        assertEquals(List.of(ENTRY), this.queue.takeDue(2 * BASE_MS));
+        assertEquals(List.of(), this.queue.takeDue(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    void waitingEntriesComeBackWhenTheirChunkLoads() {
+        this.queue.add(ENTRY, 0L);
+        this.queue.waitForChunk(ENTRY, 7L);
+        this.queue.waitForChunk(ENTRY, 7L);
+        this.queue.waitForChunk(OTHER, 7L);
+
+        assertFalse(this.queue.hasDue(10_000L));
+        assertTrue(this.queue.isWaitingForChunk(7L));
+        assertEquals(2, this.queue.waitingForChunks());
+        assertEquals(1, this.queue.waitingChunkCount());
+
+        assertEquals(List.of(ENTRY, OTHER), this.queue.takeChunk(7L));
+        assertEquals(List.of(), this.queue.takeChunk(7L));
+        assertFalse(this.queue.isWaitingForChunk(7L));
+        assertEquals(0, this.queue.waitingForChunks());
+        assertEquals(0, this.queue.waitingChunkCount());
+        assertEquals(2, this.queue.size());
+    }
+
+    @Test
+    void waitingForAChunkIsNotAnAttempt() {
+        this.queue.retryLater(ENTRY, 0L, BASE_MS, 10);
+        this.queue.waitForChunk(ENTRY, 7L);
+        this.queue.takeChunk(7L);
+
+        this.queue.retryLater(ENTRY, 0L, BASE_MS, 10);
+
+        assertEquals(List.of(), this.queue.takeDue(2 * BASE_MS - 1));
+        assertEquals(List.of(ENTRY), this.queue.takeDue(2 * BASE_MS));
+    }
+
+    @Test
+    void waitingOnAnotherChunkMovesTheEntry() {
+        this.queue.waitForChunk(ENTRY, 7L);
+        this.queue.waitForChunk(ENTRY, 8L);
+
+        assertFalse(this.queue.isWaitingForChunk(7L));
+        assertTrue(this.queue.isWaitingForChunk(8L));
+        assertEquals(1, this.queue.waitingForChunks());
+        assertEquals(1, this.queue.waitingChunkCount());
+    }
+
+    @Test
+    void removeForgetsTimersAndChunks() {
+        this.queue.add(ENTRY, 0L);
+        this.queue.waitForChunk(OTHER, 7L);
+
+        this.queue.remove(ENTRY);
+        this.queue.remove(OTHER);
+
+        assertEquals(0, this.queue.size());
+        assertEquals(0, this.queue.waitingForChunks());
+        assertEquals(0, this.queue.waitingChunkCount());
+        assertFalse(this.queue.hasDue(10_000L));
+        assertEquals(List.of(), this.queue.takeChunk(7L));
+    }
+}
@@ -0,0 +1,53 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+
+import java.util.ArrayList;
+
+/**
+ * Slot checks against a 500-entry whitelist: ArrayList.contains, as routes did before, against OutputData.accepts.
+ * The scanned "container" has 54 slots, half of them holding listed items. Prints the time per slot check.
+ * Run with ./gradlew bench -Pbench=com.hlw.hlTech.network.FilterMatchBench
+ */
+public class FilterMatchBench {
+    private static final int ENTRIES = 500;
+    private static final int SLOTS = 54;
+    private static final int SCANS = 20_000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        ArrayList<String> whitelist = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) whitelist.add("Item_" + i);
+        OutputData route = new OutputData(new BlockPos(0, 0, 0), 0, false, whitelist);
+        String[] slots = new String[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            // Even slots hold listed ids spread over the list, odd slots ids that aren't on it.
+            slots[i] = i % 2 == 0 ? "Item_" + (i * 9) : "Other_" + i;
+        }
+
+        long checks = (long) SLOTS * SCANS;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            int listHits = 0;
+            for (int scan = 0; scan < SCANS; scan++) {
+                for (String itemId : slots) {
+                    if (whitelist.contains(itemId)) listHits++;
+                }
+            }
+            long listNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int filterHits = 0;
+            for (int scan = 0; scan < SCANS; scan++) {
+                for (String itemId : slots) {
+                    if (route.accepts(itemId)) filterHits++;
+                }
+            }
+            long filterNanos = System.nanoTime() - start;
+
+            if (listHits != filterHits) throw new IllegalStateException("hit counts differ: " + listHits + " / " + filterHits);
+            System.out.printf("round %d: ArrayList.contains %.1f ns, OutputData.accepts %.1f ns per slot%n",
+                    round, listNanos / (double) checks, filterNanos / (double) checks);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemFilterTest {
+
+    @AfterEach
+    void resetTags() {
+        ItemTags.setCategoryLookup(null);
+        ItemTags.setConfigTags(null);
+    }
+
+    @Test
+    void exactIdsIgnoreCase() {
+        ItemFilter filter = ItemFilter.compile(List.of("Ore_Iron"));
+
+        assertTrue(filter.matches("Ore_Iron"));
+        assertTrue(filter.matches("ore_iron"));
+        assertFalse(filter.matches("Ore_Iron_Deep"));
+        assertFalse(filter.matches("Ore_Copper"));
+    }
+
+    @Test
+    void globsMatchTheWholeId() {
+        ItemFilter filter = ItemFilter.compile(List.of("Wood_*_Planks", "Ore_?ron"));
+
+        assertTrue(filter.matches("Wood_Oak_Planks"));
+        assertTrue(filter.matches("wood_birch_planks"));
+        assertFalse(filter.matches("Wood_Oak_Planks_Slab"));
+        assertTrue(filter.matches("Ore_Iron"));
+        assertFalse(filter.matches("Ore_Irron"));
+    }
+
+    @Test
+    void globCharactersOtherThanWildcardsAreLiteral() {
+        ItemFilter filter = ItemFilter.compile(List.of("Potion.(Red)*"));
+
+        assertTrue(filter.matches("Potion.(Red)_Large"));
+        assertFalse(filter.matches("PotionX(Red)_Large"));
+    }
+
+    @Test
+    void tagsComeFromConfig() {
+        ItemTags.setConfigTags(Map.of("Fuel", List.of("Wood_*", "Coal")));
+        ItemFilter filter = ItemFilter.compile(List.of("#fuel"));
+
+        assertTrue(filter.matches("Wood_Oak_Trunk"));
+        assertTrue(filter.matches("coal"));
+        assertFalse(filter.matches("Ore_Iron"));
+    }
+
+    @Test
+    void tagsCoverSubcategories() {
+        ItemTags.setCategoryLookup(itemId -> itemId.startsWith("Ore_") ? List.of("Blocks.Ores") : List.of("BlocksExtra"));
+        ItemFilter filter = ItemFilter.compile(List.of("#Blocks"));
+
+        assertTrue(filter.matches("Ore_Iron"));
+        assertFalse(filter.matches("Rock_Stone"));
+        assertTrue(ItemFilter.compile(List.of("#blocks.ores")).matches("Ore_Copper"));
+    }
+
+    @Test
+    void changingTagsDropsCachedAnswers() {
+        ItemFilter filter = ItemFilter.compile(List.of("#Fuel"));
+        assertFalse(filter.matches("Coal"));
+
+        ItemTags.setConfigTags(Map.of("Fuel", List.of("Coal")));
+
+        assertTrue(filter.matches("Coal"));
+    }
+
+    @Test
+    void blacklistInvertsTheFilter() {
+        OutputData whitelist = new OutputData(new BlockPos(0, 0, 0), 0, false, new ArrayList<>(List.of("Ore_*")));
+        OutputData blacklist = new OutputData(new BlockPos(0, 0, 0), 0, true, new ArrayList<>(List.of("Ore_*")));
+
+        assertTrue(whitelist.accepts("Ore_Iron"));
+        assertFalse(whitelist.accepts("Rock_Stone"));
+        assertFalse(blacklist.accepts("Ore_Iron"));
+        assertTrue(blacklist.accepts("Rock_Stone"));
+    }
+
+    @Test
+    void filterFollowsEditsToTheList() {
+        OutputData route = new OutputData(new BlockPos(0, 0, 0), 0, false, new ArrayList<>());
+        assertFalse(route.accepts("Ore_Iron"));
+
+        route.addItemId("#Ores");
+        ItemTags.setConfigTags(Map.of("Ores", List.of("Ore_*")));
+        assertTrue(route.accepts("Ore_Iron"));
+
+        route.removeItemId("#Ores");
+        assertFalse(route.accepts("Ore_Iron"));
+    }
+}
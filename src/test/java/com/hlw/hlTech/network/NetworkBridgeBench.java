@@ -0,0 +1,74 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Placement latency of the one cable that bridges two 50k-node networks, with disjoint-set unions, next to the old
+ * merge that re-added every node of the absorbed network. Each round removes the bridge again (a split of two
+ * equal halves, the worst case for the removal search) and times that too.
+ * Run with ./gradlew bench -Pbench=com.hlw.hlTech.network.NetworkBridgeBench
+ */
+public class NetworkBridgeBench {
+    private static final int SIDE = 224;
+    private static final int Y = 64;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        UUID worldId = UUID.randomUUID();
+        WorldHolder world = new WorldHolder(worldId, new CableNetworkManager());
+        // Two SIDE x SIDE grids with a one block gap at x = SIDE.
+        for (int x = 0; x < SIDE; x++) {
+            for (int z = 0; z < SIDE; z++) {
+                world.onCablePlaced(new BlockPos(x, Y, z));
+                world.onCablePlaced(new BlockPos(SIDE + 1 + x, Y, z));
+            }
+        }
+        if (world.getNetworks().size() != 2) throw new IllegalStateException("expected two networks, got " + world.getNetworks().size());
+        System.out.printf("two networks of %d nodes%n", SIDE * SIDE);
+
+        BlockPos bridge = new BlockPos(SIDE, Y, 0);
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            world.onCablePlaced(bridge);
+            long placeNanos = System.nanoTime() - start;
+            if (world.getNetworks().size() != 1) throw new IllegalStateException("bridge didn't join the networks");
+
+            start = System.nanoTime();
+            world.onCableRemoved(bridge);
+            long removeNanos = System.nanoTime() - start;
+            if (world.getNetworks().size() != 2) throw new IllegalStateException("removing the bridge didn't split the network");
+
+            long legacyNanos = legacyMerge(worldId);
+            System.out.printf("round %d: bridge placed in %.3f ms (re-adding merge %.3f ms), removed in %.3f ms%n",
+                    round, placeNanos / 1e6, legacyNanos / 1e6, removeNanos / 1e6);
+        }
+    }
+
+    /**
+     * The merge as it was before the disjoint-set forest: every node of the absorbed network is added to the other
+     * network's node map and re-pointed at it.
+     */
+    private static long legacyMerge(UUID worldId) {
+        Map<BlockPos, NodeHolder> primary = new HashMap<>();
+        Map<BlockPos, NodeHolder> absorbed = new HashMap<>();
+        CableNetwork primaryNetwork = new CableNetwork();
+        for (int x = 0; x < SIDE; x++) {
+            for (int z = 0; z < SIDE; z++) {
+                BlockPos left = new BlockPos(x, Y, z);
+                BlockPos right = new BlockPos(SIDE + 1 + x, Y, z);
+                primary.put(left, new NodeHolder(new CableNode(worldId, left)));
+                absorbed.put(right, new NodeHolder(new CableNode(worldId, right)));
+            }
+        }
+        long start = System.nanoTime();
+        for (NodeHolder node : absorbed.values()) {
+            primary.put(node.getPosition(), node);
+            node.setNetwork(primaryNetwork);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,97 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.Direction;
+import com.hlw.hlTech.util.LongHashMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Hop distances from one controller input to 50 outputs on a 100x100 cable grid (10k nodes): a BFS per query, as a
+ * path search without a table would do, against a fresh NetworkDistances table (build included) and against the
+ * same table once it is warm. Prints the time per query.
+ * Run with ./gradlew bench -Pbench=com.hlw.hlTech.network.NetworkDistancesBench
+ */
+public class NetworkDistancesBench {
+    private static final int SIDE = 100;
+    private static final int Y = 64;
+    private static final int OUTPUTS = 50;
+    private static final int ROUNDS = 10;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    public static void main(String[] args) {
+        UUID worldId = UUID.randomUUID();
+        LongHashMap<NodeHolder> nodes = new LongHashMap<>();
+        CableNetwork network = new CableNetwork();
+        for (int x = 0; x < SIDE; x++) {
+            for (int z = 0; z < SIDE; z++) {
+                BlockPos pos = new BlockPos(x, Y, z);
+                NodeHolder node = x == 0 && z == 0 ? new NodeHolder(new ControllerNode(worldId, pos)) : new NodeHolder(new CableNode(worldId, pos));
+                if (x > 0) node.addConnection(Direction.WEST);
+                if (x < SIDE - 1) node.addConnection(Direction.EAST);
+                if (z > 0) node.addConnection(Direction.NORTH);
+                if (z < SIDE - 1) node.addConnection(Direction.SOUTH);
+                nodes.put(pos.asLong(), node);
+                network.addNode(node);
+            }
+        }
+        BlockPos input = new BlockPos(0, Y, 0);
+        Random random = new Random(7);
+        List<BlockPos> outputs = new ArrayList<>();
+        for (int i = 0; i < OUTPUTS; i++) outputs.add(new BlockPos(random.nextInt(SIDE), Y, random.nextInt(SIDE)));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long bfsTotal = 0L;
+            for (BlockPos output : outputs) bfsTotal += bfsDistance(nodes, input, output);
+            long bfsNanos = System.nanoTime() - start;
+
+            network.onTopologyChanged();
+            start = System.nanoTime();
+            long coldTotal = 0L;
+            NetworkDistances distances = network.getDistances(nodes);
+            for (BlockPos output : outputs) coldTotal += distances.distance(input, output);
+            long coldNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long warmTotal = 0L;
+            for (BlockPos output : outputs) warmTotal += network.getDistances(nodes).distance(input, output);
+            long warmNanos = System.nanoTime() - start;
+
+            if (bfsTotal != coldTotal || coldTotal != warmTotal) {
+                throw new IllegalStateException("distances differ: " + bfsTotal + " / " + coldTotal + " / " + warmTotal);
+            }
+            System.out.printf("round %d: BFS per query %.1f us, table built + queried %.2f us, warm table %.3f us per query%n",
+                    round, bfsNanos / 1e3 / OUTPUTS, coldNanos / 1e3 / OUTPUTS, warmNanos / 1e3 / OUTPUTS);
+        }
+    }
+
+    /**
+     * Breadth-first search from one node to another over boxed positions, stopping at the target.
+     */
+    private static int bfsDistance(LongHashMap<NodeHolder> nodes, BlockPos from, BlockPos to) {
+        Map<BlockPos, Integer> visited = new HashMap<>();
+        ArrayDeque<BlockPos> queue = new ArrayDeque<>();
+        visited.put(from, 0);
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            BlockPos current = queue.poll();
+            int hops = visited.get(current);
+            if (current.equals(to)) return hops;
+            for (Direction dir : DIRECTIONS) {
+                if (!nodes.get(current.asLong()).getConnections().contains(dir)) continue;
+                BlockPos next = current.offset(dir);
+                if (visited.containsKey(next) || !nodes.containsKey(next.asLong())) continue;
+                visited.put(next, hops + 1);
+                queue.add(next);
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,161 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.LongHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkJournalTest {
+    private static final BlockPos CONTROLLER = new BlockPos(0, 64, 0);
+    private static final BlockPos CABLE = new BlockPos(1, 64, 0);
+    private static final BlockPos INPUT = new BlockPos(0, 64, 1);
+    private static final BlockPos OUTPUT = new BlockPos(2, 64, 1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysRecordsOnTopOfTheSnapshot() throws IOException {
+        Path file = this.dir.resolve("world.journal");
+        NetworkJournal.append(file, fourRecords(), 7L);
+
+        LongHashMap<NetworkSnapshot.NodeRecord> nodes = new LongHashMap<>();
+        NetworkJournal.ReplayResult result = NetworkJournal.replay(file, 7L, nodes);
+
+        assertEquals(4, result.records());
+        assertTrue(result.topologyChanged());
+        assertFalse(result.isDamaged());
+        assertEquals(2, nodes.size());
+        NetworkSnapshot.NodeRecord controller = nodes.get(CONTROLLER.asLong());
+        assertEquals(NodeHolder.NodeType.CONTROLLERNODE, controller.type());
+        assertEquals(CableNode.DistributionStrategy.BALANCED, controller.inputStrategies().get(INPUT));
+        assertEquals(OUTPUT, controller.controllerData().get(INPUT).get(0).outputPos);
+    }
+
+    @Test
+    void recordsOfAnotherEpochAreIgnored() throws IOException {
+        Path file = this.dir.resolve("world.journal");
+        NetworkJournal.append(file, fourRecords(), 1L);
+
+        LongHashMap<NetworkSnapshot.NodeRecord> nodes = new LongHashMap<>();
+        assertEquals(-1, NetworkJournal.replay(file, 2L, nodes).records());
+        assertTrue(nodes.isEmpty());
+
+        // A snapshot for epoch 2 restarts the journal; only what follows it applies.
+        NetworkJournal.reset(file, 2L);
+        NetworkJournal journal = new NetworkJournal();
+        journal.recordNodeRemoved(CABLE);
+        NetworkJournal.append(file, journal.takePending(), 2L);
+
+        nodes.put(CABLE.asLong(), cableRecord(CABLE));
+        NetworkJournal.ReplayResult result = NetworkJournal.replay(file, 2L, nodes);
+        assertEquals(1, result.records());
+        assertTrue(nodes.isEmpty());
+        assertEquals(-1, NetworkJournal.replay(file, 1L, new LongHashMap<>()).records());
+    }
+
+    @Test
+    void truncatedTailKeepsTheCompleteRecords() throws IOException {
+        Path file = this.dir.resolve("world.journal");
+        NetworkJournal.append(file, fourRecords(), 3L);
+        long intact = Files.size(file);
+        NetworkJournal journal = new NetworkJournal();
+        journal.recordNodePlaced(NodeHolder.NodeType.CABLENODE, new BlockPos(9, 64, 9));
+        byte[] last = journal.takePending();
+        Files.write(file, Arrays.copyOf(last, last.length - 3), StandardOpenOption.APPEND);
+
+        LongHashMap<NetworkSnapshot.NodeRecord> nodes = new LongHashMap<>();
+        NetworkJournal.ReplayResult result = NetworkJournal.replay(file, 3L, nodes);
+
+        assertEquals(4, result.records());
+        assertTrue(result.isDamaged());
+        assertEquals(intact, result.validLength());
+        assertEquals(2, nodes.size());
+        assertRecoversAfterTruncation(file, result);
+    }
+
+    @Test
+    void zeroFilledTailKeepsTheRecordsBeforeIt() throws IOException {
+        Path file = this.dir.resolve("world.journal");
+        NetworkJournal.append(file, fourRecords(), 3L);
+        long intact = Files.size(file);
+        Files.write(file, new byte[4096], StandardOpenOption.APPEND);
+
+        LongHashMap<NetworkSnapshot.NodeRecord> nodes = new LongHashMap<>();
+        NetworkJournal.ReplayResult result = NetworkJournal.replay(file, 3L, nodes);
+
+        assertEquals(4, result.records());
+        assertEquals(intact, result.validLength());
+        assertEquals(2, nodes.size());
+        assertRecoversAfterTruncation(file, result);
+    }
+
+    @Test
+    void outOfRangeNodeTypeEndsTheReplay() throws IOException {
+        Path file = this.dir.resolve("world.journal");
+        NetworkJournal.append(file, fourRecords(), 3L);
+        long intact = Files.size(file);
+        // A NODE_PLACED record whose type ordinal is garbage, followed by more garbage.
+        Files.write(file, new byte[]{1, 0x7f, 1, 2, 3, 4, 5, 6, 7, 8, (byte) 0xff, (byte) 0xee}, StandardOpenOption.APPEND);
+
+        LongHashMap<NetworkSnapshot.NodeRecord> nodes = new LongHashMap<>();
+        NetworkJournal.ReplayResult result = NetworkJournal.replay(file, 3L, nodes);
+
+        assertEquals(4, result.records());
+        assertEquals(intact, result.validLength());
+        assertEquals(2, nodes.size());
+    }
+
+    @Test
+    void headerCutShortReplaysNothing() throws IOException {
+        Path file = this.dir.resolve("world.journal");
+        Files.write(file, new byte[]{0, 0, 0, 2, 0});
+
+        NetworkJournal.ReplayResult result = NetworkJournal.replay(file, 0L, new LongHashMap<>());
+
+        assertEquals(0, result.records());
+        assertEquals(0L, result.validLength());
+        assertTrue(result.isDamaged());
+    }
+
+    /**
+     * After the damaged tail is cut off, new records appended to the journal replay again.
+     */
+    private static void assertRecoversAfterTruncation(Path file, NetworkJournal.ReplayResult damaged) throws IOException {
+        NetworkJournal.truncate(file, damaged.validLength());
+        NetworkJournal journal = new NetworkJournal();
+        journal.recordNodePlaced(NodeHolder.NodeType.CABLENODE, new BlockPos(5, 64, 5));
+        NetworkJournal.append(file, journal.takePending(), 3L);
+
+        LongHashMap<NetworkSnapshot.NodeRecord> nodes = new LongHashMap<>();
+        NetworkJournal.ReplayResult result = NetworkJournal.replay(file, 3L, nodes);
+        assertEquals(damaged.records() + 1, result.records());
+        assertFalse(result.isDamaged());
+        assertNotNull(nodes.get(new BlockPos(5, 64, 5).asLong()));
+    }
+
+    private static byte[] fourRecords() {
+        NetworkJournal journal = new NetworkJournal();
+        journal.recordNodePlaced(NodeHolder.NodeType.CONTROLLERNODE, CONTROLLER);
+        journal.recordNodePlaced(NodeHolder.NodeType.CABLENODE, CABLE);
+        OutputData output = new OutputData();
+        output.outputPos = OUTPUT;
+        output.itemIds.add("Ore_Iron");
+        journal.recordRouteSet(CONTROLLER, INPUT, output);
+        journal.recordInputStrategy(CONTROLLER, INPUT, CableNode.DistributionStrategy.BALANCED);
+        return journal.takePending();
+    }
+
+    static NetworkSnapshot.NodeRecord cableRecord(BlockPos position) {
+        return new NetworkSnapshot.NodeRecord(NodeHolder.NodeType.CABLENODE, position, Collections.emptyMap(), Collections.emptyMap(), 0, -1);
+    }
+}
@@ -0,0 +1,153 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.CableConfig;
+import com.hlw.hlTech.util.BlockPos;
+import com.hypixel.hytale.server.core.inventory.container.SimpleItemContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A controller at x = 0 and cables up to x = 31, all in one chunk. The input chest is west of the controller, in the
+ * chunk at x = -1, and the output chest east of the last cable, in the chunk at x = 32.
+ */
+class NetworkParkingTest {
+    private static final int Y = 64;
+    private static final BlockPos CONTROLLER = new BlockPos(0, Y, 0);
+    private static final BlockPos INPUT = new BlockPos(-1, Y, 0);
+    private static final BlockPos OUTPUT = new BlockPos(32, Y, 0);
+
+    private final TestChunks chunks = new TestChunks();
+    private WorldHolder world;
+
+    @BeforeEach
+    void setUp() {
+        CableConfig config = new CableConfig();
+        config.transferIntervalMs = 100L;
+        config.chunkRecheckIntervalMs = 100L;
+        config.retryIntervalMs = 100L;
+        config.journalFlushIntervalMs = Long.MAX_VALUE;
+        CableNetworkManager manager = new CableNetworkManager();
+        manager.setConfig(config);
+        this.world = new WorldHolder(UUID.randomUUID(), manager);
+        this.world.setChunkAccess(this.chunks);
+
+        for (BlockPos pos : new BlockPos[]{CONTROLLER, INPUT, OUTPUT}) this.chunks.load(pos);
+        this.chunks.place(INPUT, new SimpleItemContainer((short) 9));
+        this.chunks.place(OUTPUT, new SimpleItemContainer((short) 9));
+        this.world.onControllerPlaced(CONTROLLER);
+        for (int x = 1; x <= 31; x++) this.world.onCablePlaced(new BlockPos(x, Y, 0));
+        this.world.setRoute(this.world.getNodeAt(CONTROLLER), INPUT, new OutputData(OUTPUT, 0, true, new ArrayList<>()));
+    }
+
+    @Test
+    void parksOnlyOnceEveryInventoryChunkIsUnloaded() {
+        CableNetwork network = this.network();
+        assertTrue(network.connectedInventories.containsKey(INPUT));
+        assertTrue(network.connectedInventories.containsKey(OUTPUT));
+
+        this.chunks.unload(INPUT);
+        this.ticks(3);
+        assertFalse(network.isDormant());
+
+        this.chunks.unload(OUTPUT);
+        this.ticks(3);
+        assertTrue(network.isDormant());
+        assertTrue(network.connectedInventories.isEmpty());
+        assertTrue(this.world.chunksToLoad.contains(TestChunks.chunkOf(INPUT)));
+        assertTrue(this.world.chunksToLoad.contains(TestChunks.chunkOf(OUTPUT)));
+    }
+
+    @Test
+    void reloadingAChunkRelinksAndWakesTheNetwork() {
+        this.parkAll();
+
+        this.chunks.load(OUTPUT);
+        this.ticks(3);
+
+        CableNetwork network = this.network();
+        assertFalse(network.isDormant());
+        assertTrue(network.connectedInventories.containsKey(OUTPUT));
+        assertFalse(network.connectedInventories.containsKey(INPUT));
+
+        this.chunks.load(INPUT);
+        this.ticks(3);
+        assertTrue(network.connectedInventories.containsKey(INPUT));
+    }
+
+    @Test
+    void unloadingAndReloadingAgainRelinksAgain() {
+        this.parkAll();
+        this.chunks.load(INPUT);
+        this.chunks.load(OUTPUT);
+        this.ticks(3);
+        assertFalse(this.network().isDormant());
+
+        this.parkAll();
+        this.chunks.load(INPUT);
+        this.chunks.load(OUTPUT);
+        this.ticks(3);
+
+        assertFalse(this.network().isDormant());
+        assertTrue(this.network().connectedInventories.containsKey(INPUT));
+        assertTrue(this.network().connectedInventories.containsKey(OUTPUT));
+    }
+
+    @Test
+    void splittingADormantNetworkKeepsBothSidesDormant() {
+        this.parkAll();
+
+        this.world.onCableRemoved(new BlockPos(10, Y, 0));
+
+        CableNetwork controllerSide = this.network();
+        CableNetwork otherSide = this.world.getNodeAt(new BlockPos(31, Y, 0)).getNetwork();
+        assertNotSame(controllerSide, otherSide);
+        assertTrue(controllerSide.isDormant());
+        assertTrue(otherSide.isDormant());
+    }
+
+    @Test
+    void sidesSplitWhileDormantWakeSeparately() {
+        this.parkAll();
+        this.world.onCableRemoved(new BlockPos(10, Y, 0));
+
+        this.chunks.load(OUTPUT);
+        this.ticks(3);
+
+        assertTrue(this.network().isDormant());
+        assertFalse(this.world.getNodeAt(new BlockPos(31, Y, 0)).getNetwork().isDormant());
+    }
+
+    @Test
+    void joiningADormantNetworkWithAnAwakeOneKeepsItAwake() {
+        CableNetwork dormant = new CableNetwork();
+        dormant.park();
+        CableNetwork awake = new CableNetwork();
+        CableNetwork otherDormant = new CableNetwork();
+        otherDormant.park();
+
+        assertFalse(CableNetwork.union(dormant, awake).isDormant());
+        CableNetwork bothDormant = new CableNetwork();
+        bothDormant.park();
+        assertTrue(CableNetwork.union(bothDormant, otherDormant).isDormant());
+    }
+
+    private void parkAll() {
+        this.chunks.unload(INPUT);
+        this.chunks.unload(OUTPUT);
+        this.ticks(3);
+        assertTrue(this.network().isDormant());
+    }
+
+    private void ticks(int count) {
+        for (int i = 0; i < count; i++) this.world.tick(0.1d);
+    }
+
+    private CableNetwork network() {
+        return this.world.getNodeAt(CONTROLLER).getNetwork();
+    }
+}
@@ -0,0 +1,137 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.CableConfig;
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.Direction;
+import com.hlw.hlTech.util.LongHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A controller at x = 0 with cables up to x = 3, and a separate line of cables at x = 10 and 11. The nodes are saved
+ * from one world and restored into a fresh one.
+ */
+class NetworkRestoreTest {
+    private static final int Y = 64;
+    private static final BlockPos CONTROLLER = new BlockPos(0, Y, 0);
+    private static final BlockPos INPUT = new BlockPos(0, Y, 1);
+    private static final BlockPos OUTPUT = new BlockPos(3, Y, 1);
+
+    @TempDir
+    Path dir;
+
+    private final CableConfig config = new CableConfig();
+    private CableNetworkManager manager;
+    private LongHashMap<NetworkSnapshot.NodeRecord> saved;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.config.journalFlushIntervalMs = Long.MAX_VALUE;
+        this.manager = new CableNetworkManager();
+        this.manager.setConfig(this.config);
+
+        WorldHolder source = this.newWorld();
+        source.onControllerPlaced(CONTROLLER);
+        for (int x = 1; x <= 3; x++) source.onCablePlaced(new BlockPos(x, Y, 0));
+        source.onCablePlaced(new BlockPos(10, Y, 0));
+        source.onCablePlaced(new BlockPos(11, Y, 0));
+        source.setRoute(source.getNodeAt(CONTROLLER), INPUT, new OutputData(OUTPUT, 2, true, new ArrayList<>()));
+
+        LongHashMap<NodeHolder> nodes = new LongHashMap<>();
+        for (NodeHolder node : source.getNodes()) nodes.put(node.getPosition().asLong(), node);
+        Path file = this.dir.resolve("world.cable_networks.dat");
+        NetworkSaveWriter.write(file, NetworkSnapshot.capture(nodes), 1L);
+        this.saved = NetworkSnapshot.read(file).nodes();
+    }
+
+    @Test
+    void restoresNetworksAndConnectionsFromTheSave() {
+        WorldHolder world = this.newWorld();
+        world.restoreNetworks(this.saved, false);
+
+        this.assertRestored(world);
+        ArrayList<OutputData> routes = world.getNodeAt(CONTROLLER).controllerNode.InputsAndOutputs.get(INPUT);
+        assertEquals(1, routes.size());
+        assertEquals(OUTPUT, routes.get(0).outputPos);
+        assertEquals(2, routes.get(0).priority);
+    }
+
+    @Test
+    void savedTopologyIsTrustedWithoutVerification() {
+        this.cutConnection(new BlockPos(1, Y, 0), Direction.EAST);
+
+        WorldHolder world = this.newWorld();
+        world.restoreNetworks(this.saved, false);
+
+        assertFalse(world.getNodeAt(new BlockPos(1, Y, 0)).getConnections().contains(Direction.EAST));
+    }
+
+    @Test
+    void verificationRebuildsATopologyThatDoesntMatchTheNodes() {
+        this.config.verifyLoadedTopology = true;
+        this.cutConnection(new BlockPos(1, Y, 0), Direction.EAST);
+
+        WorldHolder world = this.newWorld();
+        world.restoreNetworks(this.saved, false);
+
+        this.assertRestored(world);
+    }
+
+    @Test
+    void journalTopologyChangesRebuild() {
+        this.cutConnection(new BlockPos(1, Y, 0), Direction.EAST);
+
+        WorldHolder world = this.newWorld();
+        world.restoreNetworks(this.saved, true);
+
+        this.assertRestored(world);
+    }
+
+    @Test
+    void recordsWithoutNetworkIdsRebuild() {
+        for (NetworkSnapshot.NodeRecord data : new ArrayList<>(this.saved.values())) {
+            this.saved.put(data.position().asLong(), new NetworkSnapshot.NodeRecord(data.type(), data.position(), data.controllerData(), data.inputStrategies(), 0, -1));
+        }
+
+        WorldHolder world = this.newWorld();
+        world.restoreNetworks(this.saved, false);
+
+        this.assertRestored(world);
+    }
+
+    private void assertRestored(WorldHolder world) {
+        assertEquals(2, world.getNetworks().size());
+        assertEquals(6, world.getNodes().size());
+        CableNetwork controllerSide = world.getNodeAt(CONTROLLER).getNetwork();
+        for (int x = 1; x <= 3; x++) {
+            assertSame(controllerSide, world.getNodeAt(new BlockPos(x, Y, 0)).getNetwork());
+            assertTrue(world.getNodeAt(new BlockPos(x, Y, 0)).getConnections().contains(Direction.WEST));
+        }
+        CableNetwork other = world.getNodeAt(new BlockPos(10, Y, 0)).getNetwork();
+        assertNotSame(controllerSide, other);
+        assertSame(other, world.getNodeAt(new BlockPos(11, Y, 0)).getNetwork());
+        assertTrue(world.getNodeAt(new BlockPos(1, Y, 0)).getConnections().contains(Direction.EAST));
+        assertTrue(world.getNodeAt(new BlockPos(10, Y, 0)).getConnections().contains(Direction.EAST));
+        assertFalse(world.getNodeAt(new BlockPos(3, Y, 0)).getConnections().contains(Direction.EAST));
+    }
+
+    private void cutConnection(BlockPos pos, Direction dir) {
+        NetworkSnapshot.NodeRecord data = this.saved.get(pos.asLong());
+        int mask = data.connectionMask() & ~(1 << dir.ordinal());
+        this.saved.put(pos.asLong(), new NetworkSnapshot.NodeRecord(data.type(), data.position(), data.controllerData(), data.inputStrategies(), mask, data.networkId()));
+    }
+
+    private WorldHolder newWorld() {
+        WorldHolder world = new WorldHolder(UUID.randomUUID(), this.manager);
+        world.setChunkAccess(new TestChunks());
+        return world;
+    }
+}
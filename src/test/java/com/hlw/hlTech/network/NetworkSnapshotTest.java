@@ -0,0 +1,145 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.Direction;
+import com.hlw.hlTech.util.LongHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkSnapshotTest {
+    private static final UUID WORLD = UUID.randomUUID();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void versionTwoRoundTrip() throws IOException {
+        // Controller at the origin with a cable to the east; a lone cable far away forms a second network.
+        BlockPos controllerPos = new BlockPos(0, 64, 0);
+        BlockPos cablePos = new BlockPos(1, 64, 0);
+        BlockPos lonePos = new BlockPos(100, 70, -100);
+        BlockPos input = new BlockPos(0, 64, 1);
+        BlockPos output = new BlockPos(1, 64, 1);
+
+        NodeHolder controller = new NodeHolder(new ControllerNode(WORLD, controllerPos));
+        NodeHolder cable = new NodeHolder(new CableNode(WORLD, cablePos));
+        NodeHolder lone = new NodeHolder(new CableNode(WORLD, lonePos));
+        controller.addConnection(Direction.EAST);
+        cable.addConnection(Direction.WEST);
+        CableNetwork first = new CableNetwork();
+        CableNetwork second = new CableNetwork();
+        join(first, controller);
+        join(first, cable);
+        join(second, lone);
+
+        OutputData route = new OutputData(output, 3, false, new ArrayList<>(List.of("Ore_Iron", "*_Log", "#Blocks.Ores")));
+        route.intervalMs = 2500;
+        controller.controllerNode.AddOrModifyInputOutput(input, route);
+        controller.controllerNode.setDistributionStrategy(input, CableNode.DistributionStrategy.ROUND_ROBIN);
+
+        LongHashMap<NodeHolder> world = new LongHashMap<>();
+        for (NodeHolder node : List.of(controller, cable, lone)) world.put(node.getPosition().asLong(), node);
+        Path file = this.dir.resolve("world.cable_networks.dat");
+        NetworkSaveWriter.write(file, NetworkSnapshot.capture(world), 42L);
+
+        NetworkSnapshot.Contents contents = NetworkSnapshot.read(file);
+        assertEquals(42L, contents.epoch());
+        assertEquals(3, contents.nodes().size());
+
+        NetworkSnapshot.NodeRecord loadedController = contents.nodes().get(controllerPos.asLong());
+        assertEquals(NodeHolder.NodeType.CONTROLLERNODE, loadedController.type());
+        assertEquals(1 << Direction.EAST.ordinal(), loadedController.connectionMask());
+        assertEquals(CableNode.DistributionStrategy.ROUND_ROBIN, loadedController.inputStrategies().get(input));
+        OutputData loadedRoute = NetworkSnapshot.findRoute(loadedController, input, output);
+        assertNotNull(loadedRoute);
+        assertEquals(3, loadedRoute.priority);
+        assertFalse(loadedRoute.allowAll);
+        assertEquals(2500, loadedRoute.intervalMs);
+        assertEquals(route.itemIds, loadedRoute.itemIds);
+
+        NetworkSnapshot.NodeRecord loadedCable = contents.nodes().get(cablePos.asLong());
+        NetworkSnapshot.NodeRecord loadedLone = contents.nodes().get(lonePos.asLong());
+        assertEquals(1 << Direction.WEST.ordinal(), loadedCable.connectionMask());
+        assertEquals(loadedController.networkId(), loadedCable.networkId());
+        assertNotEquals(loadedController.networkId(), loadedLone.networkId());
+        assertEquals(0, loadedLone.connectionMask());
+    }
+
+    @Test
+    void readsVersionOneFiles() throws IOException {
+        Path file = this.dir.resolve("legacy.cable_networks.dat");
+        BlockPos controllerPos = new BlockPos(-5, 10, 7);
+        BlockPos input = new BlockPos(-5, 10, 8);
+        BlockPos output = new BlockPos(-4, 10, 8);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(1);
+            out.writeInt(2);
+            out.writeInt(NodeHolder.NodeType.CABLENODE.ordinal());
+            new BlockPos(-4, 10, 7).writeToDataStream(out);
+            out.writeInt(NodeHolder.NodeType.CONTROLLERNODE.ordinal());
+            controllerPos.writeToDataStream(out);
+            out.writeInt(1);
+            input.writeToDataStream(out);
+            out.writeInt(1);
+            new OutputData(output, 1, true, new ArrayList<>(List.of("Rock_Stone"))).writeToDataStream(out);
+            out.writeLong(9L);
+        }
+
+        NetworkSnapshot.Contents contents = NetworkSnapshot.read(file);
+
+        assertEquals(9L, contents.epoch());
+        assertEquals(2, contents.nodes().size());
+        NetworkSnapshot.NodeRecord controller = contents.nodes().get(controllerPos.asLong());
+        assertEquals(-1, controller.networkId());
+        OutputData route = NetworkSnapshot.findRoute(controller, input, output);
+        assertNotNull(route);
+        assertTrue(route.allowAll);
+        assertEquals(List.of("Rock_Stone"), route.itemIds);
+    }
+
+    @Test
+    void rejectsNewerVersions() throws IOException {
+        Path file = this.dir.resolve("future.cable_networks.dat");
+        LongHashMap<NodeHolder> world = new LongHashMap<>();
+        NodeHolder cable = new NodeHolder(new CableNode(WORLD, new BlockPos(0, 0, 0)));
+        join(new CableNetwork(), cable);
+        world.put(cable.getPosition().asLong(), cable);
+        NetworkSaveWriter.write(file, NetworkSnapshot.capture(world), 1L);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, NetworkSnapshot.FORMAT_VERSION + 1);
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> NetworkSnapshot.read(file));
+    }
+
+    @Test
+    void fileCanBeReplacedRightAfterReading() throws IOException {
+        Path file = this.dir.resolve("world.cable_networks.dat");
+        LongHashMap<NodeHolder> world = new LongHashMap<>();
+        NodeHolder cable = new NodeHolder(new CableNode(WORLD, new BlockPos(3, 3, 3)));
+        join(new CableNetwork(), cable);
+        world.put(cable.getPosition().asLong(), cable);
+        NetworkSaveWriter.write(file, NetworkSnapshot.capture(world), 1L);
+
+        NetworkSnapshot.read(file);
+        NetworkSaveWriter.write(file, NetworkSnapshot.capture(world), 2L);
+
+        assertEquals(2L, NetworkSnapshot.read(file).epoch());
+    }
+
+    private static void join(CableNetwork network, NodeHolder node) {
+        node.setNetwork(network);
+        network.addNode(node);
+    }
+}
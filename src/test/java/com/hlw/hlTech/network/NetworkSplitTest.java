@@ -0,0 +1,137 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkSplitTest {
+    private static final int Y = 64;
+
+    private WorldHolder world;
+
+    @BeforeEach
+    void setUp() {
+        this.world = new WorldHolder(UUID.randomUUID(), new CableNetworkManager());
+    }
+
+    @Test
+    void cuttingALineSplitsIt() {
+        for (int x = 0; x <= 10; x++) this.world.onCablePlaced(pos(x, 0));
+
+        this.world.onCableRemoved(pos(5, 0));
+
+        assertEquals(2, this.world.getNetworks().size());
+        CableNetwork left = this.networkAt(0, 0);
+        CableNetwork right = this.networkAt(10, 0);
+        assertNotSame(left, right);
+        assertEquals(5, left.size());
+        assertEquals(5, right.size());
+        for (int x = 0; x < 5; x++) assertSame(left, this.networkAt(x, 0));
+        for (int x = 6; x <= 10; x++) assertSame(right, this.networkAt(x, 0));
+    }
+
+    @Test
+    void cuttingALoopKeepsOneNetwork() {
+        List<BlockPos> ring = new ArrayList<>();
+        for (int x = 0; x <= 2; x++) {
+            for (int z = 0; z <= 2; z++) {
+                if (x != 1 || z != 1) ring.add(pos(x, z));
+            }
+        }
+        for (BlockPos pos : ring) this.world.onCablePlaced(pos);
+        CableNetwork before = this.networkAt(0, 0);
+
+        this.world.onCableRemoved(pos(1, 0));
+
+        assertEquals(1, this.world.getNetworks().size());
+        assertSame(before, this.networkAt(0, 0));
+        assertEquals(7, before.size());
+        for (BlockPos pos : ring) {
+            if (!pos.equals(pos(1, 0))) assertSame(before, this.world.getNodeAt(pos).getNetwork());
+        }
+    }
+
+    @Test
+    void removingAnEndKeepsOneNetwork() {
+        for (int x = 0; x <= 4; x++) this.world.onCablePlaced(pos(x, 0));
+
+        this.world.onCableRemoved(pos(4, 0));
+
+        assertEquals(1, this.world.getNetworks().size());
+        assertEquals(4, this.networkAt(0, 0).size());
+    }
+
+    @Test
+    void removingTheCentreOfACrossSplitsFourWays() {
+        this.world.onCablePlaced(pos(0, 0));
+        for (int i = 1; i <= 3; i++) {
+            this.world.onCablePlaced(pos(i, 0));
+            this.world.onCablePlaced(pos(-i, 0));
+            this.world.onCablePlaced(pos(0, i));
+            this.world.onCablePlaced(pos(0, -i));
+        }
+
+        this.world.onCableRemoved(pos(0, 0));
+
+        assertEquals(4, this.world.getNetworks().size());
+        Set<CableNetwork> arms = new HashSet<>();
+        for (BlockPos end : List.of(pos(3, 0), pos(-3, 0), pos(0, 3), pos(0, -3))) {
+            CableNetwork arm = this.world.getNodeAt(end).getNetwork();
+            assertEquals(3, arm.size());
+            arms.add(arm);
+        }
+        assertEquals(4, arms.size());
+    }
+
+    @Test
+    void controllerKeepsItsRoutesWhenItsSideSplitsOff() {
+        this.world.onControllerPlaced(pos(0, 0));
+        for (int x = 1; x <= 10; x++) this.world.onCablePlaced(pos(x, 0));
+        NodeHolder controller = this.world.getNodeAt(pos(0, 0));
+        BlockPos input = pos(0, 1);
+        OutputData route = new OutputData(pos(1, 1), 0, true, new ArrayList<>());
+        this.world.setRoute(controller, input, route);
+
+        this.world.onCableRemoved(pos(3, 0));
+
+        CableNetwork controllerSide = controller.getNetwork();
+        CableNetwork otherSide = this.networkAt(10, 0);
+        assertNotSame(controllerSide, otherSide);
+        assertTrue(controllerSide.getControllers().contains(controller));
+        assertTrue(otherSide.getControllers().isEmpty());
+        assertSame(route, controller.controllerNode.InputsAndOutputs.get(input).get(0));
+    }
+
+    @Test
+    void roundRobinPositionMovesWithTheController() {
+        this.world.onControllerPlaced(pos(0, 0));
+        for (int x = 1; x <= 10; x++) this.world.onCablePlaced(pos(x, 0));
+        NodeHolder controller = this.world.getNodeAt(pos(0, 0));
+        BlockPos input = pos(0, 1);
+        this.world.setRoute(controller, input, new OutputData(pos(1, 1), 0, true, new ArrayList<>()));
+        CableNetwork before = controller.getNetwork();
+        before.onTransferSuccess(input);
+        before.onTransferSuccess(input);
+
+        this.world.onCableRemoved(pos(3, 0));
+
+        assertNotSame(before, controller.getNetwork());
+        assertEquals(2, controller.getNetwork().getRoundRobinIndex(input));
+    }
+
+    private CableNetwork networkAt(int x, int z) {
+        return this.world.getNodeAt(pos(x, z)).getNetwork();
+    }
+
+    private static BlockPos pos(int x, int z) {
+        return new BlockPos(x, Y, z);
+    }
+}
@@ -0,0 +1,151 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.Direction;
+import com.hlw.hlTech.util.LongHashMap;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.SimpleItemContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A controller at x = 0 on a cable line running east to x = 10. The input inventory sits south of the controller,
+ * the outputs south of the cables at x = 2, 5 and 8, and one output is south of x = 20, outside the network.
+ */
+class OutputSelectorTest {
+    private static final UUID WORLD = UUID.randomUUID();
+    private static final int Y = 64;
+    private static final BlockPos INPUT = new BlockPos(0, Y, 1);
+
+    private final LongHashMap<NodeHolder> nodes = new LongHashMap<>();
+    private CableNetwork network;
+    private NodeHolder controller;
+    private OutputData near;
+    private OutputData middle;
+    private OutputData far;
+    private OutputData unreachable;
+
+    @BeforeEach
+    void setUp() {
+        this.network = new CableNetwork();
+        this.controller = this.place(new NodeHolder(new ControllerNode(WORLD, new BlockPos(0, Y, 0))));
+        for (int x = 1; x <= 10; x++) {
+            NodeHolder cable = this.place(new NodeHolder(new CableNode(WORLD, new BlockPos(x, Y, 0))));
+            cable.addConnection(Direction.WEST);
+            this.nodes.get(BlockPos.pack(x - 1, Y, 0)).addConnection(Direction.EAST);
+        }
+        for (int x : new int[]{0, 2, 5, 8}) this.nodes.get(BlockPos.pack(x, Y, 0)).addConnection(Direction.SOUTH);
+
+        // Configured in an order that matches no strategy.
+        this.middle = this.route(5);
+        this.unreachable = this.route(20);
+        this.far = this.route(8);
+        this.near = this.route(2);
+    }
+
+    @Test
+    void fillFirstKeepsTheConfiguredOrder() {
+        assertEquals(List.of(this.middle, this.unreachable, this.far, this.near), this.ordered());
+    }
+
+    @Test
+    void priorityComesBeforeTheStrategy() {
+        this.controller.controllerNode.setDistributionStrategy(INPUT, CableNode.DistributionStrategy.NEAREST);
+        this.far.priority = 5;
+        this.controller.controllerNode.invalidateOutputOrder();
+
+        assertEquals(List.of(this.far, this.near, this.middle, this.unreachable), this.ordered());
+    }
+
+    @Test
+    void nearestAndFarthestFollowCableHops() {
+        this.controller.controllerNode.setDistributionStrategy(INPUT, CableNode.DistributionStrategy.NEAREST);
+        assertEquals(List.of(this.near, this.middle, this.far, this.unreachable), this.ordered());
+
+        this.controller.controllerNode.setDistributionStrategy(INPUT, CableNode.DistributionStrategy.FARTHEST);
+        assertEquals(List.of(this.far, this.middle, this.near, this.unreachable), this.ordered());
+    }
+
+    @Test
+    void distanceOrderIsRebuiltWhenTheTopologyChanges() {
+        NodeHolder cable = this.nodes.get(BlockPos.pack(8, Y, 0));
+        cable.removeConnection(Direction.SOUTH);
+        this.network.onTopologyChanged();
+        this.controller.controllerNode.setDistributionStrategy(INPUT, CableNode.DistributionStrategy.FARTHEST);
+        assertEquals(List.of(this.middle, this.near, this.unreachable, this.far), this.ordered());
+
+        cable.addConnection(Direction.SOUTH);
+        this.network.onTopologyChanged();
+
+        assertEquals(List.of(this.far, this.middle, this.near, this.unreachable), this.ordered());
+    }
+
+    @Test
+    void roundRobinRotatesEachPriorityGroup() {
+        this.controller.controllerNode.setDistributionStrategy(INPUT, CableNode.DistributionStrategy.ROUND_ROBIN);
+        this.unreachable.priority = 1;
+        this.controller.controllerNode.invalidateOutputOrder();
+
+        assertEquals(List.of(this.unreachable, this.middle, this.far, this.near), this.arranged());
+        this.network.onTransferSuccess(INPUT);
+        assertEquals(List.of(this.unreachable, this.far, this.near, this.middle), this.arranged());
+        this.network.onTransferSuccess(INPUT);
+        assertEquals(List.of(this.unreachable, this.near, this.middle, this.far), this.arranged());
+        this.network.onTransferSuccess(INPUT);
+        assertEquals(List.of(this.unreachable, this.middle, this.far, this.near), this.arranged());
+    }
+
+    @Test
+    void balancedPutsTheEmptiestDestinationFirst() {
+        this.controller.controllerNode.setDistributionStrategy(INPUT, CableNode.DistributionStrategy.BALANCED);
+        TransferEngine.Dispatch dispatch = new TransferEngine.Dispatch(this.controller, this.network, INPUT, new SimpleItemContainer((short) 9));
+        int[] items = {40, 0, 90, 10};
+        List<OutputData> ordered = this.ordered();
+        for (int i = 0; i < ordered.size(); i++) dispatch.addTarget(ordered.get(i), filled(items[i]), 64);
+
+        OutputSelector.BALANCED.arrange(dispatch, new ContainerCache());
+
+        assertEquals(List.of(this.unreachable, this.near, this.middle, this.far), outputs(dispatch));
+    }
+
+    private NodeHolder place(NodeHolder node) {
+        this.nodes.put(node.getPosition().asLong(), node);
+        this.network.addNode(node);
+        return node;
+    }
+
+    private OutputData route(int x) {
+        OutputData output = new OutputData(new BlockPos(x, Y, 1), 0, true, new ArrayList<>());
+        this.controller.controllerNode.AddOrModifyInputOutput(INPUT, output);
+        return output;
+    }
+
+    private List<OutputData> ordered() {
+        return this.controller.controllerNode.getOrderedOutputs(INPUT, this.network, this.nodes);
+    }
+
+    private List<OutputData> arranged() {
+        TransferEngine.Dispatch dispatch = new TransferEngine.Dispatch(this.controller, this.network, INPUT, null);
+        for (OutputData output : this.ordered()) dispatch.addTarget(output, null, 64);
+        OutputSelector.of(this.controller.controllerNode.getDistributionStrategy(INPUT)).arrange(dispatch, new ContainerCache());
+        return outputs(dispatch);
+    }
+
+    private static List<OutputData> outputs(TransferEngine.Dispatch dispatch) {
+        List<OutputData> outputs = new ArrayList<>();
+        for (TransferEngine.Target target : dispatch.targets) outputs.add(target.output);
+        return outputs;
+    }
+
+    private static SimpleItemContainer filled(int items) {
+        SimpleItemContainer container = new SimpleItemContainer((short) 9);
+        if (items > 0) container.addItemStack(new ItemStack("Rock_Stone", items));
+        return container;
+    }
+}
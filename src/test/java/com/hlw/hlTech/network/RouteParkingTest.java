@@ -0,0 +1,168 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.CableConfig;
+import com.hlw.hlTech.util.BlockPos;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.inventory.container.SimpleItemContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A controller at the origin and a cable east of it, with a route from the chest south of the controller to the
+ * chest south of the cable. Every tick runs one pass, at 100 ms of world time each.
+ */
+class RouteParkingTest {
+    private static final BlockPos CONTROLLER = new BlockPos(0, 64, 0);
+    private static final BlockPos INPUT = new BlockPos(0, 64, 1);
+    private static final BlockPos OUTPUT = new BlockPos(1, 64, 1);
+
+    private final TestChunks chunks = new TestChunks();
+    private final CableConfig config = new CableConfig();
+    private final SimpleItemContainer input = new SimpleItemContainer((short) 9);
+    private final SimpleItemContainer output = new SimpleItemContainer((short) 9);
+    private WorldHolder world;
+
+    @BeforeEach
+    void setUp() {
+        this.config.transferIntervalMs = 100L;
+        this.config.idleRecheckMs = 300L;
+        this.config.backoffBaseMs = 200L;
+        this.config.backoffMaxMs = 800L;
+        this.config.journalFlushIntervalMs = Long.MAX_VALUE;
+        CableNetworkManager manager = new CableNetworkManager();
+        manager.setConfig(this.config);
+        this.world = new WorldHolder(UUID.randomUUID(), manager);
+        this.world.setChunkAccess(this.chunks);
+        this.chunks.load(CONTROLLER);
+    }
+
+    @Test
+    void routeWithAnEmptySourceIsParked() {
+        this.build(this.output);
+
+        assertEquals(List.of(0, 1, 1), this.idlePerPass(3));
+        assertEquals(0, this.world.getTransferEngine().getLastPassAttempted());
+    }
+
+    @Test
+    void routeThatMovesItemsIsNotParked() {
+        this.input.addItemStack(new ItemStack("Rock_Stone", 64));
+        this.build(this.output);
+
+        assertEquals(List.of(0, 0, 0), this.idlePerPass(3));
+        assertEquals(3, count(this.output));
+    }
+
+    @Test
+    void sourceChangeWakesTheRoute() {
+        this.build(this.output);
+        this.idlePerPass(2);
+
+        this.input.addItemStack(new ItemStack("Rock_Stone", 1));
+
+        assertEquals(List.of(0), this.idlePerPass(1));
+        assertEquals(1, count(this.output));
+    }
+
+    @Test
+    void destinationChangeWakesTheRoute() {
+        this.build(this.output);
+        this.idlePerPass(2);
+
+        this.output.addItemStack(new ItemStack("Rock_Dirt", 1));
+
+        assertEquals(List.of(0, 1), this.idlePerPass(2));
+    }
+
+    @Test
+    void parkedRouteIsRecheckedAfterIdleRecheckMs() {
+        this.build(this.output);
+
+        // Parked at 100 ms, rechecked at 400 ms and parked again.
+        assertEquals(List.of(0, 1, 1, 0, 1, 1, 0), this.idlePerPass(7));
+    }
+
+    @Test
+    void fullDestinationBacksOffExponentiallyUpToTheCap() {
+        this.input.addItemStack(new ItemStack("Rock_Stone", 64));
+        this.build(this.fullChest());
+
+        List<Integer> attempts = new ArrayList<>();
+        for (int pass = 1; pass <= 24; pass++) {
+            this.world.tick(0.1d);
+            if (this.world.getTransferEngine().getLastPassBackedOff() == 0) {
+                attempts.add(pass);
+                assertTrue(this.world.getTransferEngine().getLastPassAttempted() > 0);
+            }
+        }
+
+        // Waits of 200, 400 and then 800 ms, the cap.
+        assertEquals(List.of(1, 3, 7, 15, 23), attempts);
+        assertEquals(0L, this.world.getTransferEngine().getTotalMoved());
+    }
+
+    @Test
+    void destinationChangeEndsTheBackoff() {
+        this.input.addItemStack(new ItemStack("Rock_Stone", 64));
+        SimpleItemContainer full = this.fullChest();
+        this.build(full);
+        this.world.tick(0.1d);
+
+        full.removeItemStackFromSlot((short) 0);
+        this.world.tick(0.1d);
+
+        assertEquals(0, this.world.getTransferEngine().getLastPassBackedOff());
+        assertEquals(1, count(full));
+    }
+
+    @Test
+    void sourceChangeDoesntEndTheBackoff() {
+        this.input.addItemStack(new ItemStack("Rock_Stone", 64));
+        this.build(this.fullChest());
+        this.world.tick(0.1d);
+
+        this.input.addItemStack(new ItemStack("Rock_Stone", 1));
+        this.world.tick(0.1d);
+
+        assertEquals(1, this.world.getTransferEngine().getLastPassBackedOff());
+    }
+
+    private SimpleItemContainer fullChest() {
+        SimpleItemContainer full = new SimpleItemContainer((short) 1);
+        full.addItemStack(new ItemStack("Rock_Dirt", 64));
+        return full;
+    }
+
+    private void build(ItemContainer dest) {
+        this.chunks.place(INPUT, this.input);
+        this.chunks.place(OUTPUT, dest);
+        this.world.onControllerPlaced(CONTROLLER);
+        this.world.onCablePlaced(new BlockPos(1, 64, 0));
+        this.world.setRoute(this.world.getNodeAt(CONTROLLER), INPUT, new OutputData(OUTPUT, 0, true, new ArrayList<>()));
+    }
+
+    private List<Integer> idlePerPass(int passes) {
+        List<Integer> idle = new ArrayList<>();
+        for (int i = 0; i < passes; i++) {
+            this.world.tick(0.1d);
+            idle.add(this.world.getTransferEngine().getLastPassIdle());
+        }
+        return idle;
+    }
+
+    private static int count(ItemContainer container) {
+        int count = 0;
+        for (short slot = 0; slot < container.getCapacity(); slot++) {
+            ItemStack stack = container.getItemStack(slot);
+            if (stack != null && !stack.isEmpty()) count += stack.getQuantity();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,55 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hlw.hlTech.util.ChunkBlockHelper;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chunks and containers for a WorldHolder under test. Every chunk starts unloaded; a container block whose container
+ * isn't ready yet is placed with a null container.
+ */
+class TestChunks implements ChunkAccess {
+    private final Set<Long> loaded = new HashSet<>();
+    private final Map<BlockPos, ItemContainer> containers = new HashMap<>();
+
+    static long chunkOf(BlockPos pos) {
+        return ChunkBlockHelper.getChunkIdAt(pos);
+    }
+
+    void load(BlockPos pos) {
+        this.loaded.add(chunkOf(pos));
+    }
+
+    void unload(BlockPos pos) {
+        this.loaded.remove(chunkOf(pos));
+    }
+
+    void place(BlockPos pos, ItemContainer container) {
+        this.containers.put(pos, container);
+    }
+
+    @Override
+    public boolean isAlive() {
+        return true;
+    }
+
+    @Override
+    public boolean isChunkLoaded(long chunkId) {
+        return this.loaded.contains(chunkId);
+    }
+
+    @Override
+    public boolean hasInventoryAt(BlockPos pos) {
+        return this.isChunkLoaded(chunkOf(pos)) && this.containers.containsKey(pos);
+    }
+
+    @Override
+    public ItemContainer getItemContainer(BlockPos pos) {
+        return this.isChunkLoaded(chunkOf(pos)) ? this.containers.get(pos) : null;
+    }
+}
@@ -0,0 +1,117 @@
+package com.hlw.hlTech.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ticks are 0.125 s so the elapsed time adds up exactly.
+ */
+class TickSchedulerTest {
+    private static final double TICK = 0.125d;
+
+    private final TickScheduler scheduler = new TickScheduler();
+    private final List<String> runs = new ArrayList<>();
+
+    @Test
+    void jobsRunOnTheirIntervalWithTheElapsedSeconds() {
+        List<Double> elapsed = new ArrayList<>();
+        this.scheduler.add("transfer", () -> 250L, false, elapsed::add);
+
+        assertFalse(this.scheduler.advance(TICK));
+        this.scheduler.runDue();
+        assertTrue(this.scheduler.advance(TICK));
+        this.scheduler.runDue();
+        assertFalse(this.scheduler.advance(TICK));
+
+        assertEquals(List.of(0.25d), elapsed);
+    }
+
+    @Test
+    void onlyOneMaintenanceJobRunsPerTick() {
+        this.add("transfer", 125L, false);
+        this.add("retries", 125L, true);
+        this.add("chunks", 125L, true);
+        this.add("save", 125L, true);
+
+        this.tick();
+        assertEquals(List.of("transfer", "retries"), this.runs);
+
+        this.runs.clear();
+        this.tick();
+        assertEquals(List.of("transfer", "chunks"), this.runs);
+    }
+
+    @Test
+    void maintenanceJobsTakeTurns() {
+        this.add("retries", 125L, true);
+        this.add("chunks", 125L, true);
+        this.add("save", 125L, true);
+
+        for (int i = 0; i < 6; i++) this.tick();
+
+        assertEquals(List.of("retries", "chunks", "save", "retries", "chunks", "save"), this.runs);
+    }
+
+    @Test
+    void aShortIntervalDoesntStarveALongOne() {
+        this.add("retries", 125L, true);
+        this.add("save", 500L, true);
+
+        for (int i = 0; i < 8; i++) this.tick();
+
+        assertEquals(2, this.runs.stream().filter("save"::equals).count());
+        assertEquals(6, this.runs.stream().filter("retries"::equals).count());
+    }
+
+    @Test
+    void waitingMaintenanceKeepsItsElapsedTime() {
+        List<Double> elapsed = new ArrayList<>();
+        this.add("retries", 125L, true);
+        this.scheduler.add("save", () -> 125L, true, elapsed::add);
+
+        this.tick();
+        this.tick();
+
+        assertEquals(List.of(0.25d), elapsed);
+    }
+
+    @Test
+    void intervalChangesApplyOnTheNextTick() {
+        AtomicLong interval = new AtomicLong(1000L);
+        this.scheduler.add("transfer", interval::get, false, seconds -> this.runs.add("transfer"));
+
+        this.tick();
+        assertEquals(List.of(), this.runs);
+
+        interval.set(125L);
+        this.tick();
+        assertEquals(List.of("transfer"), this.runs);
+    }
+
+    @Test
+    void aFailingJobDoesntStopTheOthers() {
+        this.scheduler.add("broken", () -> 125L, false, seconds -> {
+            throw new IllegalStateException("broken");
+        });
+        this.add("transfer", 125L, false);
+        this.add("save", 125L, true);
+
+        this.tick();
+        this.tick();
+
+        assertEquals(List.of("transfer", "save", "transfer", "save"), this.runs);
+    }
+
+    private void add(String name, long intervalMs, boolean maintenance) {
+        this.scheduler.add(name, () -> intervalMs, maintenance, seconds -> this.runs.add(name));
+    }
+
+    private void tick() {
+        if (this.scheduler.advance(TICK)) this.scheduler.runDue();
+    }
+}
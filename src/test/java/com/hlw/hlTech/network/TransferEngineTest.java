@@ -0,0 +1,176 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.util.BlockPos;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.inventory.container.SimpleItemContainer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferEngineTest {
+    private static final BlockPos INPUT = new BlockPos(0, 64, 1);
+    private static final String STONE = "Rock_Stone";
+    private static final String DIRT = "Rock_Dirt";
+
+    private final TransferEngine engine = new TransferEngine();
+    private final CountingContainer source = new CountingContainer();
+    private final TransferEngine.Dispatch dispatch = new TransferEngine.Dispatch(null, null, INPUT, this.source);
+
+    @Test
+    void sourceIsScannedOnceForAllOutputs() {
+        this.fill(STONE, 10, DIRT, 10);
+        TransferEngine.Target stone = this.target(only(STONE), chest(), 64);
+        TransferEngine.Target dirt = this.target(only(DIRT), chest(), 64);
+        TransferEngine.Target rest = this.target(all(), chest(), 64);
+
+        assertEquals(20, this.engine.dispatch(this.dispatch));
+
+        assertEquals(this.source.getCapacity(), this.source.reads);
+        assertEquals(10, stone.moved);
+        assertEquals(10, dirt.moved);
+        assertEquals(0, rest.moved);
+    }
+
+    @Test
+    void stacksGoToTheFirstAcceptingOutputAndOverflowToTheNext() {
+        this.fill(STONE, 10, DIRT, 5);
+        ItemContainer dirtChest = chest();
+        ItemContainer small = chest();
+        ItemContainer large = chest();
+        this.target(only(DIRT), dirtChest, 64);
+        this.target(all(), small, 4);
+        this.target(all(), large, 64);
+
+        assertEquals(15, this.engine.dispatch(this.dispatch));
+
+        assertEquals(5, count(dirtChest, DIRT));
+        assertEquals(4, count(small, STONE));
+        assertEquals(6, count(large, STONE));
+        assertEquals(0, count(this.source, STONE) + count(this.source, DIRT));
+    }
+
+    @Test
+    void whatAFullDestinationCantTakeOverflows() {
+        this.fill(STONE, 10);
+        SimpleItemContainer nearlyFull = new SimpleItemContainer((short) 1);
+        nearlyFull.addItemStack(new ItemStack(STONE, 60));
+        TransferEngine.Target first = this.target(all(), nearlyFull, 64);
+        TransferEngine.Target second = this.target(all(), chest(), 64);
+
+        this.engine.dispatch(this.dispatch);
+
+        assertEquals(4, first.moved);
+        assertEquals(6, second.moved);
+        assertFalse(first.isBlocked());
+    }
+
+    @Test
+    void refusedItemsAreNotOfferedToThatOutputAgain() {
+        this.fill(STONE, 10, DIRT, 10, STONE, 10);
+        SimpleItemContainer dirtOnly = new SimpleItemContainer((short) 1);
+        dirtOnly.addItemStack(new ItemStack(DIRT, 60));
+        TransferEngine.Target first = this.target(all(), dirtOnly, 64);
+        TransferEngine.Target second = this.target(all(), chest(), 64);
+
+        this.engine.dispatch(this.dispatch);
+
+        assertTrue(first.hasRefused(STONE));
+        assertFalse(first.hasRefused(DIRT));
+        assertFalse(first.isBlocked());
+        assertEquals(4, first.moved);
+        assertEquals(26, second.moved);
+        // The second stone stack is only offered to the second output.
+        assertEquals(46L, this.engine.getTotalAttempted());
+    }
+
+    @Test
+    void outputThatRefusedEverythingIsBlocked() {
+        this.fill(STONE, 10);
+        SimpleItemContainer full = new SimpleItemContainer((short) 1);
+        full.addItemStack(new ItemStack(DIRT, 64));
+        TransferEngine.Target target = this.target(all(), full, 64);
+
+        assertEquals(0, this.engine.dispatch(this.dispatch));
+
+        assertTrue(target.isBlocked());
+        assertEquals(10, count(this.source, STONE));
+    }
+
+    @Test
+    void outputWithNothingToTakeIsNotBlocked() {
+        this.fill(STONE, 10);
+        TransferEngine.Target target = this.target(only(DIRT), chest(), 64);
+
+        this.engine.dispatch(this.dispatch);
+
+        assertFalse(target.isBlocked());
+        assertEquals(0L, this.engine.getTotalAttempted());
+    }
+
+    @Test
+    void scanStopsOnceEveryBudgetIsSpent() {
+        this.fill(STONE, 2, STONE, 2, STONE, 2);
+        this.target(all(), chest(), 3);
+
+        assertEquals(3, this.engine.dispatch(this.dispatch));
+
+        assertEquals(2, this.source.reads);
+        assertEquals(3, count(this.source, STONE));
+    }
+
+    private TransferEngine.Target target(OutputData output, ItemContainer dest, int budget) {
+        this.dispatch.addTarget(output, dest, budget);
+        return this.dispatch.targets.get(this.dispatch.targets.size() - 1);
+    }
+
+    /**
+     * Fills consecutive slots from item id and quantity pairs.
+     */
+    private void fill(Object... stacks) {
+        for (int i = 0; i < stacks.length; i += 2) {
+            this.source.setItemStackForSlot((short) (i / 2), new ItemStack((String) stacks[i], (Integer) stacks[i + 1]));
+        }
+    }
+
+    private static OutputData only(String itemId) {
+        return new OutputData(new BlockPos(1, 64, 1), 0, false, new ArrayList<>(List.of(itemId)));
+    }
+
+    private static OutputData all() {
+        return new OutputData(new BlockPos(1, 64, 1), 0, true, new ArrayList<>());
+    }
+
+    private static ItemContainer chest() {
+        return new SimpleItemContainer((short) 9);
+    }
+
+    private static int count(ItemContainer container, String itemId) {
+        int count = 0;
+        for (short slot = 0; slot < container.getCapacity(); slot++) {
+            ItemStack stack = container.getItemStack(slot);
+            if (stack != null && !stack.isEmpty() && itemId.equals(stack.getItemId())) count += stack.getQuantity();
+        }
+        return count;
+    }
+
+    /**
+     * Counts the slot reads the engine makes.
+     */
+    private static class CountingContainer extends SimpleItemContainer {
+        int reads = 0;
+
+        CountingContainer() {
+            super((short) 9);
+        }
+
+        @Override
+        public ItemStack getItemStack(short slot) {
+            ++this.reads;
+            return super.getItemStack(slot);
+        }
+    }
+}
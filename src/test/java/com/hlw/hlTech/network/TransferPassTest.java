@@ -0,0 +1,176 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.CableConfig;
+import com.hlw.hlTech.util.BlockPos;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.inventory.container.SimpleItemContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A controller at x = 0 and cables at x = 1 and 2. Each of them has a chest of stone south of it and an empty chest
+ * above it; route(x) links the two.
+ */
+class TransferPassTest {
+    private static final int Y = 64;
+    private static final int LINES = 3;
+
+    private final TestChunks chunks = new TestChunks();
+    private final CableConfig config = new CableConfig();
+    private final ItemContainer[] outputs = new ItemContainer[LINES];
+    private WorldHolder world;
+
+    @BeforeEach
+    void setUp() {
+        this.config.transferIntervalMs = 100L;
+        this.config.itemsPerTransfer = 1;
+        this.config.journalFlushIntervalMs = Long.MAX_VALUE;
+        CableNetworkManager manager = new CableNetworkManager();
+        manager.setConfig(this.config);
+        this.world = new WorldHolder(UUID.randomUUID(), manager);
+        this.world.setChunkAccess(this.chunks);
+
+        this.chunks.load(new BlockPos(0, Y, 0));
+        for (int x = 0; x < LINES; x++) {
+            SimpleItemContainer input = new SimpleItemContainer((short) 9);
+            input.addItemStack(new ItemStack("Rock_Stone", 64));
+            this.outputs[x] = new SimpleItemContainer((short) 9);
+            this.chunks.place(input(x), input);
+            this.chunks.place(output(x), this.outputs[x]);
+        }
+        this.world.onControllerPlaced(new BlockPos(0, Y, 0));
+        for (int x = 1; x < LINES; x++) this.world.onCablePlaced(new BlockPos(x, Y, 0));
+    }
+
+    @Test
+    void routeBudgetCoversTheIntervalsThePassSpans() {
+        assertEquals(1, TransferEngine.computeRouteBudget(this.config, 0.1d));
+        assertEquals(3, TransferEngine.computeRouteBudget(this.config, 0.3d));
+        assertEquals(1, TransferEngine.computeRouteBudget(this.config, 0.01d));
+        this.config.itemsPerTransfer = 4;
+        assertEquals(8, TransferEngine.computeRouteBudget(this.config, 0.2d));
+    }
+
+    @Test
+    void transfersFollowTheConfiguredInterval() {
+        this.config.transferIntervalMs = 200L;
+        this.route(0);
+
+        this.ticks(1);
+        assertEquals(0, count(this.outputs[0]));
+        this.ticks(1);
+        assertEquals(1, count(this.outputs[0]));
+        this.ticks(4);
+        assertEquals(3, count(this.outputs[0]));
+    }
+
+    @Test
+    void routeIntervalSkipsThePassesInBetween() {
+        this.route(0).intervalMs = 300;
+        this.route(1);
+
+        this.ticks(6);
+
+        assertEquals(2, count(this.outputs[0]));
+        assertEquals(6, count(this.outputs[1]));
+    }
+
+    @Test
+    void unboundedPassesFinishInOneTick() {
+        this.config.transferTickBudgetMs = 0d;
+        for (int x = 0; x < LINES; x++) this.route(x);
+
+        this.ticks(1);
+
+        assertEquals(LINES, this.total());
+        assertEquals(1, this.world.getTransferEngine().getLastPassSlices());
+        assertEquals(LINES, this.world.getTransferEngine().getLastPassRoutes());
+    }
+
+    @Test
+    void routeLimitSpreadsThePassAndResumesWhereItStopped() {
+        this.config.transferRoutesPerTick = 1;
+        for (int x = 0; x < LINES; x++) this.route(x);
+
+        for (int tick = 1; tick <= LINES; tick++) {
+            this.ticks(1);
+            assertEquals(tick, this.total());
+        }
+        for (int x = 0; x < LINES; x++) assertEquals(1, count(this.outputs[x]));
+        assertEquals(LINES, this.world.getTransferEngine().getLastPassSlices());
+        assertEquals(LINES, this.world.getTransferEngine().getLastPassRoutes());
+    }
+
+    @Test
+    void slicesRunOnTicksWithoutATransferDue() {
+        this.config.transferRoutesPerTick = 1;
+        for (int x = 0; x < LINES; x++) this.route(x);
+
+        this.ticks(1);
+        this.world.tick(0.01d);
+        this.world.tick(0.01d);
+
+        assertEquals(LINES, this.total());
+    }
+
+    @Test
+    void timeBudgetStillRunsOneRoutePerTick() {
+        this.config.transferTickBudgetMs = 0.000001d;
+        for (int x = 0; x < LINES; x++) this.route(x);
+
+        this.ticks(LINES);
+
+        assertEquals(LINES, this.total());
+        assertEquals(LINES, this.world.getTransferEngine().getLastPassSlices());
+    }
+
+    @Test
+    void timeSpentSlicingIsAddedToTheNextPass() {
+        this.config.transferRoutesPerTick = 1;
+        for (int x = 0; x < LINES; x++) this.route(x);
+
+        this.ticks(2 * LINES);
+
+        // The second pass covers the three ticks since the first one started.
+        assertEquals(4 * LINES, this.total());
+    }
+
+    private int total() {
+        int total = 0;
+        for (ItemContainer output : this.outputs) total += count(output);
+        return total;
+    }
+
+    private OutputData route(int x) {
+        OutputData route = new OutputData(output(x), 0, true, new ArrayList<>());
+        this.world.setRoute(this.world.getNodeAt(new BlockPos(0, Y, 0)), input(x), route);
+        return route;
+    }
+
+    private void ticks(int count) {
+        for (int i = 0; i < count; i++) this.world.tick(0.1d);
+    }
+
+    private static BlockPos input(int x) {
+        return new BlockPos(x, Y, 1);
+    }
+
+    private static BlockPos output(int x) {
+        return new BlockPos(x, Y + 1, 0);
+    }
+
+    private static int count(ItemContainer container) {
+        int count = 0;
+        for (short slot = 0; slot < container.getCapacity(); slot++) {
+            ItemStack stack = container.getItemStack(slot);
+            if (stack != null && !stack.isEmpty()) count += stack.getQuantity();
+        }
+        return count;
+    }
+}
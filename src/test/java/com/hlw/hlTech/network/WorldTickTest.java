@@ -0,0 +1,100 @@
+package com.hlw.hlTech.network;
+
+import com.hlw.hlTech.CableConfig;
+import com.hlw.hlTech.util.BlockPos;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.inventory.container.SimpleItemContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two worlds with the same setup: a controller at the origin, a cable east of it, and a route from the chest south of
+ * the controller to the chest south of the cable.
+ */
+class WorldTickTest {
+    private static final BlockPos CONTROLLER = new BlockPos(0, 64, 0);
+    private static final BlockPos INPUT = new BlockPos(0, 64, 1);
+    private static final BlockPos OUTPUT = new BlockPos(1, 64, 1);
+
+    private final CableNetworkManager manager = new CableNetworkManager();
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+    private ItemContainer firstOutput;
+    private ItemContainer secondOutput;
+
+    @BeforeEach
+    void setUp() {
+        CableConfig config = new CableConfig();
+        config.transferIntervalMs = 100L;
+        config.journalFlushIntervalMs = Long.MAX_VALUE;
+        this.manager.setConfig(config);
+        this.firstOutput = this.addWorld(this.first);
+        this.secondOutput = this.addWorld(this.second);
+    }
+
+    @Test
+    void tickingAWorldOnlyAdvancesItsOwnHolder() {
+        for (int i = 0; i < 3; i++) this.manager.tickWorld(this.first, 0.1d);
+
+        assertEquals(3, count(this.firstOutput));
+        assertEquals(0, count(this.secondOutput));
+        assertTrue(this.manager.worldHolders.get(this.first).getLastUpdateNanos() > 0L);
+        assertEquals(0L, this.manager.worldHolders.get(this.second).getLastUpdateNanos());
+    }
+
+    @Test
+    void unknownWorldsAreIgnored() {
+        this.manager.tickWorld(UUID.randomUUID(), 0.1d);
+
+        assertEquals(0, count(this.firstOutput));
+        assertEquals(0, count(this.secondOutput));
+    }
+
+    @Test
+    void ticksWithNothingDueAreNotTimed() {
+        WorldHolder holder = this.manager.worldHolders.get(this.first);
+        this.manager.tickWorld(this.first, 0.05d);
+
+        assertEquals(0L, holder.getLastUpdateNanos());
+        assertEquals(0d, holder.getAverageUpdateNanos());
+
+        this.manager.tickWorld(this.first, 0.05d);
+
+        assertEquals(1, count(this.firstOutput));
+        assertTrue(holder.getLastUpdateNanos() > 0L);
+        assertTrue(holder.getAverageUpdateNanos() > 0d);
+    }
+
+    private ItemContainer addWorld(UUID worldId) {
+        TestChunks chunks = new TestChunks();
+        chunks.load(CONTROLLER);
+        SimpleItemContainer input = new SimpleItemContainer((short) 9);
+        input.addItemStack(new ItemStack("Rock_Stone", 64));
+        SimpleItemContainer output = new SimpleItemContainer((short) 9);
+        chunks.place(INPUT, input);
+        chunks.place(OUTPUT, output);
+
+        WorldHolder holder = new WorldHolder(worldId, this.manager);
+        holder.setChunkAccess(chunks);
+        this.manager.worldHolders.put(worldId, holder);
+        holder.onControllerPlaced(CONTROLLER);
+        holder.onCablePlaced(new BlockPos(1, 64, 0));
+        holder.setRoute(holder.getNodeAt(CONTROLLER), INPUT, new OutputData(OUTPUT, 0, true, new ArrayList<>()));
+        return output;
+    }
+
+    private static int count(ItemContainer container) {
+        int count = 0;
+        for (short slot = 0; slot < container.getCapacity(); slot++) {
+            ItemStack stack = container.getItemStack(slot);
+            if (stack != null && !stack.isEmpty()) count += stack.getQuantity();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,63 @@
+package com.hlw.hlTech.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockPosTest {
+    private static final int XZ_MIN = -(1 << 25);
+    private static final int XZ_MAX = (1 << 25) - 1;
+    private static final int Y_MIN = -2048;
+    private static final int Y_MAX = 2047;
+
+    @Test
+    void packRoundTripsAtTheCoordinateLimits() {
+        int[] horizontal = {XZ_MIN, XZ_MIN + 1, -1, 0, 1, XZ_MAX - 1, XZ_MAX};
+        int[] vertical = {Y_MIN, Y_MIN + 1, -1, 0, 1, 255, Y_MAX - 1, Y_MAX};
+        for (int x : horizontal) {
+            for (int y : vertical) {
+                for (int z : horizontal) {
+                    long packed = BlockPos.pack(x, y, z);
+                    assertEquals(x, BlockPos.unpackX(packed));
+                    assertEquals(y, BlockPos.unpackY(packed));
+                    assertEquals(z, BlockPos.unpackZ(packed));
+                    assertEquals(new BlockPos(x, y, z), BlockPos.fromLong(packed));
+                    assertEquals(packed, new BlockPos(x, y, z).asLong());
+                }
+            }
+        }
+    }
+
+    @Test
+    void neighboursAtTheLimitsGetDistinctKeys() {
+        BlockPos[] corners = {
+                new BlockPos(XZ_MIN, Y_MIN, XZ_MIN),
+                new BlockPos(XZ_MAX, Y_MAX, XZ_MAX),
+                new BlockPos(XZ_MIN, 0, XZ_MAX),
+                new BlockPos(-1, -1, -1),
+        };
+        for (BlockPos corner : corners) {
+            for (Direction dir : Direction.values()) {
+                BlockPos neighbour = corner.offset(dir);
+                if (!inRange(neighbour)) continue;
+                long packed = BlockPos.offset(corner.asLong(), dir);
+                assertEquals(neighbour.asLong(), packed);
+                assertNotEquals(corner.asLong(), packed);
+                assertEquals(neighbour, BlockPos.fromLong(packed));
+            }
+        }
+    }
+
+    @Test
+    void equalPositionsHashAlike() {
+        BlockPos a = new BlockPos(XZ_MAX, Y_MIN, -7);
+        BlockPos b = BlockPos.fromLong(a.asLong());
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    private static boolean inRange(BlockPos pos) {
+        return pos.getX() >= XZ_MIN && pos.getX() <= XZ_MAX && pos.getZ() >= XZ_MIN && pos.getZ() <= XZ_MAX
+                && pos.getY() >= Y_MIN && pos.getY() <= Y_MAX;
+    }
+}
@@ -0,0 +1,96 @@
+package com.hlw.hlTech.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashMapTest {
+
+    @Test
+    void putGetRemove() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertNull(map.put(1L, "a"));
+        assertEquals("a", map.put(1L, "b"));
+        assertEquals("b", map.get(1L));
+        assertTrue(map.containsKey(1L));
+        assertEquals(1, map.size());
+        assertEquals("b", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertFalse(map.containsKey(1L));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void removingFromACollisionChainKeepsTheRestReachable() {
+        // Keys that share a home slot form one probe chain, including chains that wrap past the end of the table.
+        for (int home = 0; home < 32; home++) {
+            List<Long> chain = keysWithHomeSlot(home, 31, 5);
+            for (int removed = 0; removed < chain.size(); removed++) {
+                LongHashMap<Long> map = new LongHashMap<>(16);
+                for (long key : chain) map.put(key, key);
+                assertEquals(chain.get(removed), map.remove(chain.get(removed)));
+                for (int i = 0; i < chain.size(); i++) {
+                    long key = chain.get(i);
+                    if (i == removed) {
+                        assertFalse(map.containsKey(key));
+                    } else {
+                        assertEquals(Long.valueOf(key), map.get(key), "home " + home + ", removed #" + removed);
+                    }
+                }
+                assertEquals(chain.size() - 1, map.size());
+            }
+        }
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(42L);
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int step = 0; step < 200_000; step++) {
+            long key = random.nextInt(512) - 256;
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, (long) step), map.put(key, (long) step));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        List<Long> values = new ArrayList<>(map.values());
+        values.sort(null);
+        List<Long> expectedValues = new ArrayList<>(expected.values());
+        expectedValues.sort(null);
+        assertEquals(expectedValues, values);
+    }
+
+    @Test
+    void clearEmptiesTheMap() {
+        LongHashMap<String> map = new LongHashMap<>();
+        for (long key = 0; key < 100; key++) map.put(key, "v");
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.values().iterator().hasNext());
+        assertNull(map.get(5L));
+    }
+
+    /**
+     * Same mix as LongHashMap, so the test can build chains of colliding keys.
+     */
+    private static List<Long> keysWithHomeSlot(int home, int mask, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 0; keys.size() < count; key++) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            if (((int) (h ^ (h >>> 32)) & mask) == home) keys.add(key);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,93 @@
+package com.hlw.hlTech.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Neighbour probes over a flat cable grid: the old BlockPos keys (Objects.hash, a new BlockPos per offset) in a
+ * HashMap against packed long keys in a LongHashMap. Prints time and bytes allocated per probe.
+ * Run with ./gradlew bench -Pbench=com.hlw.hlTech.util.PackedPositionBench
+ */
+public class PackedPositionBench {
+    private static final int SIDE = 300;
+    private static final int ROUNDS = 10;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    public static void main(String[] args) {
+        Map<LegacyPos, Object> legacy = new HashMap<>();
+        LongHashMap<Object> packed = new LongHashMap<>();
+        Object node = new Object();
+        for (int x = 0; x < SIDE; x++) {
+            for (int z = 0; z < SIDE; z++) {
+                legacy.put(new LegacyPos(x, 64, z), node);
+                packed.put(BlockPos.pack(x, 64, z), node);
+            }
+        }
+        long probes = (long) SIDE * SIDE * DIRECTIONS.length;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            int legacyHits = probeLegacy(legacy);
+            long legacyNanos = System.nanoTime() - start;
+            long legacyBytes = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            start = System.nanoTime();
+            int packedHits = probePacked(packed);
+            long packedNanos = System.nanoTime() - start;
+            long packedBytes = allocatedBytes() - before;
+
+            if (legacyHits != packedHits) throw new IllegalStateException("hit counts differ: " + legacyHits + " / " + packedHits);
+            System.out.printf("round %d: BlockPos+HashMap %.1f ns, %.1f B per probe | packed+LongHashMap %.1f ns, %.1f B per probe%n",
+                    round, legacyNanos / (double) probes, legacyBytes / (double) probes, packedNanos / (double) probes, packedBytes / (double) probes);
+        }
+    }
+
+    private static int probeLegacy(Map<LegacyPos, Object> nodes) {
+        int hits = 0;
+        for (LegacyPos pos : nodes.keySet()) {
+            for (Direction dir : DIRECTIONS) {
+                if (nodes.containsKey(pos.offset(dir))) hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static int probePacked(LongHashMap<Object> nodes) {
+        int hits = 0;
+        for (int x = 0; x < SIDE; x++) {
+            for (int z = 0; z < SIDE; z++) {
+                long key = BlockPos.pack(x, 64, z);
+                for (Direction dir : DIRECTIONS) {
+                    if (nodes.containsKey(BlockPos.offset(key, dir))) hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * BlockPos as it was before packed keys.
+     */
+    private record LegacyPos(int x, int y, int z) {
+        LegacyPos offset(Direction direction) {
+            return new LegacyPos(this.x + direction.getOffsetX(), this.y + direction.getOffsetY(), this.z + direction.getOffsetZ());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof LegacyPos other && this.x == other.x && this.y == other.y && this.z == other.z;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(new Object[]{this.x, this.y, this.z});
+        }
+    }
+}